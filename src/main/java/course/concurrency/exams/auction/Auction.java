@@ -1,8 +1,13 @@
 package course.concurrency.exams.auction;
 
+import java.util.List;
+
 public interface Auction {
 
     boolean propose(Bid bid);
 
     Bid getLatestBid();
+
+    // up to count latest accepted bids, oldest first
+    List<Bid> getLatestBids(int count);
 }
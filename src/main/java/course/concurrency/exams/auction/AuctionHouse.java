@@ -0,0 +1,81 @@
+package course.concurrency.exams.auction;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class AuctionHouse {
+
+    private final Notifier notifier;
+    private final Function<Notifier, AuctionStoppable> auctionFactory;
+
+    // ConcurrentHashMap is already sharded: get() takes no lock and inserts lock a single bin,
+    // so bids on different lots never touch the same lock
+    private final ConcurrentHashMap<Long, AuctionStoppable> lots = new ConcurrentHashMap<>();
+
+    public AuctionHouse(Notifier notifier) {
+        this(notifier, AuctionStoppableOptimistic::new);
+    }
+
+    public AuctionHouse(Notifier notifier, Function<Notifier, AuctionStoppable> auctionFactory) {
+        this.notifier = notifier;
+        this.auctionFactory = auctionFactory;
+    }
+
+    public AuctionStoppable openLot(long lotId) {
+        AuctionStoppable lot = lots.get(lotId);
+        if (lot != null) {
+            return lot;
+        }
+        return lots.computeIfAbsent(lotId, id -> auctionFactory.apply(notifier));
+    }
+
+    // returns false for unknown lots
+    public boolean propose(long lotId, Bid bid) {
+        AuctionStoppable lot = lots.get(lotId);
+        return lot != null && lot.propose(bid);
+    }
+
+    public Bid getLatestBid(long lotId) {
+        AuctionStoppable lot = lots.get(lotId);
+        return lot == null ? null : lot.getLatestBid();
+    }
+
+    public List<Bid> getLatestBids(long lotId, int count) {
+        AuctionStoppable lot = lots.get(lotId);
+        return lot == null ? List.of() : lot.getLatestBids(count);
+    }
+
+    public Bid stopLot(long lotId) {
+        AuctionStoppable lot = lots.get(lotId);
+        return lot == null ? null : lot.stopAuction();
+    }
+
+    // stop every open lot and return winning bids by lot id, lots without bids have no winner
+    public Map<Long, Bid> stopAll() {
+        Map<Long, Bid> winners = new HashMap<>();
+        lots.forEach((lotId, lot) -> {
+            Bid winner = lot.stopAuction();
+            if (winner != null) {
+                winners.put(lotId, winner);
+            }
+        });
+        return winners;
+    }
+
+    public CompletableFuture<Map<Long, Bid>> stopAll(Instant deadline) {
+        long delay = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+        return CompletableFuture.supplyAsync(this::stopAll,
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+
+    public int size() {
+        return lots.size();
+    }
+}
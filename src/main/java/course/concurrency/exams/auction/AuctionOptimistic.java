@@ -1,25 +1,45 @@
 package course.concurrency.exams.auction;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class AuctionOptimistic implements Auction {
 
     private Notifier notifier;
+    private final BidHistory history;
 
     public AuctionOptimistic(Notifier notifier) {
+        this(notifier, BidHistory.DEFAULT_CAPACITY);
+    }
+
+    public AuctionOptimistic(Notifier notifier, int historyCapacity) {
         this.notifier = notifier;
+        this.history = new BidHistory(historyCapacity);
     }
 
-    private Bid latestBid;
+    private final AtomicReference<Bid> latestBid = new AtomicReference<>(Bid.INITIAL);
 
     public boolean propose(Bid bid) {
-        if (bid.getPrice() > latestBid.getPrice()) {
-            notifier.sendOutdatedMessage(latestBid);
-            latestBid = bid;
-            return true;
+        Bid current;
+        do {
+            current = latestBid.get();
+            if (bid.getPrice() <= current.getPrice()) {
+                return false;
+            }
+        } while (!latestBid.compareAndSet(current, bid));
+        history.add(bid);
+
+        if (current != Bid.INITIAL) {
+            notifier.sendOutdatedMessage(this, current);
         }
-        return false;
+        return true;
+    }
+
+    public List<Bid> getLatestBids(int count) {
+        return history.latest(count);
     }
 
     public Bid getLatestBid() {
-        return latestBid;
+        return Bid.orNull(latestBid.get());
     }
 }
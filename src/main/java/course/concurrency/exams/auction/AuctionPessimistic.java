@@ -1,25 +1,57 @@
 package course.concurrency.exams.auction;
 
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 public class AuctionPessimistic implements Auction {
 
     private Notifier notifier;
+    private final BidHistory history;
 
     public AuctionPessimistic(Notifier notifier) {
+        this(notifier, BidHistory.DEFAULT_CAPACITY);
+    }
+
+    public AuctionPessimistic(Notifier notifier, int historyCapacity) {
         this.notifier = notifier;
+        this.history = new BidHistory(historyCapacity);
     }
 
-    private Bid latestBid;
+    private final Lock lock = new ReentrantLock();
+
+    private volatile Bid latestBid = Bid.INITIAL;
 
     public boolean propose(Bid bid) {
-        if (bid.getPrice() > latestBid.getPrice()) {
-            notifier.sendOutdatedMessage(latestBid);
+        // most bids lose, reject them without taking the lock
+        if (bid.getPrice() <= latestBid.getPrice()) {
+            return false;
+        }
+
+        Bid outdated;
+        lock.lock();
+        try {
+            outdated = latestBid;
+            if (bid.getPrice() <= outdated.getPrice()) {
+                return false;
+            }
             latestBid = bid;
-            return true;
+            history.add(bid);
+        } finally {
+            lock.unlock();
+        }
+
+        if (outdated != Bid.INITIAL) {
+            notifier.sendOutdatedMessage(this, outdated);
         }
-        return false;
+        return true;
+    }
+
+    public List<Bid> getLatestBids(int count) {
+        return history.latest(count);
     }
 
     public Bid getLatestBid() {
-        return latestBid;
+        return Bid.orNull(latestBid);
     }
 }
@@ -2,6 +2,6 @@ package course.concurrency.exams.auction;
 
 public interface AuctionStoppable extends Auction {
 
-    // stop auction and return latest bid
+    // stop auction and return latest bid, null if there were none
     Bid stopAuction();
 }
@@ -1,29 +1,54 @@
 package course.concurrency.exams.auction;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
 public class AuctionStoppableOptimistic implements AuctionStoppable {
 
     private Notifier notifier;
+    private final BidHistory history;
 
     public AuctionStoppableOptimistic(Notifier notifier) {
+        this(notifier, BidHistory.DEFAULT_CAPACITY);
+    }
+
+    public AuctionStoppableOptimistic(Notifier notifier, int historyCapacity) {
         this.notifier = notifier;
+        this.history = new BidHistory(historyCapacity);
     }
 
-    private Bid latestBid;
+    // mark == auction is stopped
+    private final AtomicMarkableReference<Bid> latestBid = new AtomicMarkableReference<>(Bid.INITIAL, false);
 
     public boolean propose(Bid bid) {
-        if (bid.getPrice() > latestBid.getPrice()) {
-            notifier.sendOutdatedMessage(latestBid);
-            latestBid = bid;
-            return true;
+        Bid current;
+        do {
+            current = latestBid.getReference();
+            if (bid.getPrice() <= current.getPrice() || latestBid.isMarked()) {
+                return false;
+            }
+        } while (!latestBid.compareAndSet(current, bid, false, false));
+        history.add(bid);
+
+        if (current != Bid.INITIAL) {
+            notifier.sendOutdatedMessage(this, current);
         }
-        return false;
+        return true;
+    }
+
+    public List<Bid> getLatestBids(int count) {
+        return history.latest(count);
     }
 
     public Bid getLatestBid() {
-        return latestBid;
+        return Bid.orNull(latestBid.getReference());
     }
 
     public Bid stopAuction() {
-        return latestBid;
+        Bid current;
+        do {
+            current = latestBid.getReference();
+        } while (!latestBid.attemptMark(current, true));
+        return Bid.orNull(current);
     }
 }
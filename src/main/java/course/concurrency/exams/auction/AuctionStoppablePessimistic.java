@@ -1,29 +1,97 @@
 package course.concurrency.exams.auction;
 
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
 public class AuctionStoppablePessimistic implements AuctionStoppable {
 
     private Notifier notifier;
+    private final BidHistory history;
 
     public AuctionStoppablePessimistic(Notifier notifier) {
+        this(notifier, BidHistory.DEFAULT_CAPACITY);
+    }
+
+    public AuctionStoppablePessimistic(Notifier notifier, int historyCapacity) {
         this.notifier = notifier;
+        this.history = new BidHistory(historyCapacity);
     }
 
-    private Bid latestBid;
+    private final StampedLock lock = new StampedLock();
+
+    private Bid latestBid = Bid.INITIAL;
+    private boolean stopped;
 
     public boolean propose(Bid bid) {
-        if (bid.getPrice() > latestBid.getPrice()) {
-            notifier.sendOutdatedMessage(latestBid);
+        long stamp = lock.tryOptimisticRead();
+        Bid current = latestBid;
+        boolean isStopped = stopped;
+        if (!lock.validate(stamp)) {
+            // a writer got in: check again under the read lock, which losing bids share,
+            // instead of queueing all of them for the write lock
+            stamp = lock.readLock();
+            current = latestBid;
+            isStopped = stopped;
+        }
+        if (isStopped || bid.getPrice() <= current.getPrice()) {
+            if (StampedLock.isReadLockStamp(stamp)) {
+                lock.unlockRead(stamp);
+            }
+            return false;
+        }
+
+        // only a possible winner gets here
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0L) {
+            if (StampedLock.isReadLockStamp(stamp)) {
+                lock.unlockRead(stamp);
+            }
+            writeStamp = lock.writeLock();
+        }
+        stamp = writeStamp;
+        try {
+            current = latestBid;
+            if (stopped || bid.getPrice() <= current.getPrice()) {
+                return false;
+            }
             latestBid = bid;
-            return true;
+            history.add(bid);
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        return false;
+
+        if (current != Bid.INITIAL) {
+            notifier.sendOutdatedMessage(this, current);
+        }
+        return true;
+    }
+
+    public List<Bid> getLatestBids(int count) {
+        return history.latest(count);
     }
 
     public Bid getLatestBid() {
-        return latestBid;
+        long stamp = lock.tryOptimisticRead();
+        Bid current = latestBid;
+        if (lock.validate(stamp)) {
+            return Bid.orNull(current);
+        }
+
+        stamp = lock.readLock();
+        try {
+            return Bid.orNull(latestBid);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     public Bid stopAuction() {
-        return latestBid;
+        long stamp = lock.writeLock();
+        try {
+            stopped = true;
+            return Bid.orNull(latestBid);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 }
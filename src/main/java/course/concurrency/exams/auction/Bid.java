@@ -1,25 +1,34 @@
 package course.concurrency.exams.auction;
 
 public class Bid {
-    private Long id;
-    private Long participantId;
-    private Long price;
 
-    public Bid(Long id, Long participantId, Long price) {
+    // placeholder for an auction without bids, loses to any real price.
+    // Never leaves the auctions, they return null instead
+    static final Bid INITIAL = new Bid(-1L, -1L, Long.MIN_VALUE);
+
+    private final long id;
+    private final long participantId;
+    private final long price;
+
+    public Bid(long id, long participantId, long price) {
         this.id = id;
         this.participantId = participantId;
         this.price = price;
     }
 
-    public Long getId() {
+    public long getId() {
         return id;
     }
 
-    public Long getParticipantId() {
+    public long getParticipantId() {
         return participantId;
     }
 
-    public Long getPrice() {
+    public long getPrice() {
         return price;
     }
+
+    static Bid orNull(Bid bid) {
+        return bid == INITIAL ? null : bid;
+    }
 }
@@ -0,0 +1,63 @@
+package course.concurrency.exams.auction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Fixed-size ring of accepted bids. Writers claim a slot and overwrite the older bid there,
+// readers never block writers and finish after one pass over the ring
+public class BidHistory {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final AtomicReferenceArray<Bid> slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+
+    public BidHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void add(Bid bid) {
+        long seq = cursor.getAndIncrement();
+        // A writer that stalled after claiming its slot may come back a lap later;
+        // it must not replace the newer bid stored there meanwhile
+        slots.accumulateAndGet((int) (seq & mask), bid, BidHistory::higher);
+    }
+
+    private static Bid higher(Bid stored, Bid bid) {
+        return stored == null || bid.getPrice() > stored.getPrice() ? bid : stored;
+    }
+
+    // up to count latest accepted bids, oldest first
+    public List<Bid> latest(int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        List<Bid> bids = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            Bid bid = slots.get(i);
+            if (bid != null) {
+                bids.add(bid);
+            }
+        }
+        // accepted prices strictly grow, so price order is acceptance order
+        // even if two writers stored their slots out of order
+        bids.sort(Comparator.comparingLong(Bid::getPrice));
+        return bids.subList(Math.max(0, bids.size() - count), bids.size());
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,135 @@
+package course.concurrency.exams.auction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CoalescingNotifier extends Notifier {
+
+    private final int batchSize;
+    private final int maxPending;
+
+    // the latest outdated bid of every participant in every lot, older ones are superseded by it
+    private final ConcurrentHashMap<Key, Bid> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("CoalescingNotifier_flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CoalescingNotifier() {
+        this(100, 50, 100_000);
+    }
+
+    public CoalescingNotifier(int batchSize, long flushIntervalMillis, int maxPending) {
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void sendOutdatedMessage(Bid bid) {
+        sendOutdatedMessage(null, bid);
+    }
+
+    @Override
+    public void sendOutdatedMessage(Auction lot, Bid bid) {
+        Key key = new Key(lot, bid.getParticipantId());
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            // the buffer is full: drop the message like a full Notifier queue does,
+            // bidding threads never flush themselves
+            requestFlush();
+            return;
+        }
+        pending.merge(key, bid, (old, latest) -> latest.getPrice() > old.getPrice() ? latest : old);
+
+        if (pending.size() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RejectedExecutionException ignored) {
+                // notifier is shut down
+            }
+        }
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        List<Bid> batch = new ArrayList<>(batchSize);
+        for (Key key : pending.keySet()) {
+            Bid bid = pending.remove(key);
+            if (bid == null) {
+                continue;
+            }
+            batch.add(bid);
+            if (batch.size() == batchSize) {
+                submit(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+    }
+
+    private void submit(List<Bid> batch) {
+        try {
+            executor.execute(() -> sendBatch(batch));
+        } catch (RejectedExecutionException ignored) {
+            // notifier is shut down
+        }
+    }
+
+    // one message per batch
+    protected void sendBatch(List<Bid> batch) {
+        imitateSending();
+    }
+
+    // stop accepting new batches, flush what is buffered and wait until in-flight batches are sent
+    @Override
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+            flush();
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Key {
+        private final Auction lot;
+        private final long participantId;
+
+        Key(Auction lot, long participantId) {
+            this.lot = lot;
+            this.participantId = participantId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return lot == other.lot && participantId == other.participantId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(lot) + Long.hashCode(participantId);
+        }
+    }
+}
@@ -1,16 +1,37 @@
 package course.concurrency.exams.auction;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class Notifier {
 
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    // messages are delivered here, so that bidding threads never wait for imitateSending.
+    // The queue is bounded: when it is full the oldest message is dropped, it is the most outdated one
+    protected final ExecutorService executor = new ThreadPoolExecutor(
+            Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), new ThreadPoolExecutor.DiscardOldestPolicy());
+
     public void sendOutdatedMessage(Bid bid) {
-        imitateSending();
+        executor.execute(this::imitateSending);
     }
 
-    private void imitateSending() {
+    // bid was outdated in the given lot
+    public void sendOutdatedMessage(Auction lot, Bid bid) {
+        sendOutdatedMessage(bid);
+    }
+
+    protected void imitateSending() {
         try {
             Thread.sleep(2000);
         } catch (InterruptedException e) {}
     }
 
-    public void shutdown() {}
+    public void shutdown() {
+        executor.shutdownNow();
+    }
 }
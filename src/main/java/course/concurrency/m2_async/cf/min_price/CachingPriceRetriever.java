@@ -0,0 +1,251 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Caches prices of another PriceRetriever per (itemId, shopId) for ttl.
+// Concurrent requests for the same key share one call of the delegate. The call runs on the loader,
+// not on a requesting thread, so a caller that gets interrupted (PriceAggregator cancels calls
+// it no longer needs) stops waiting without breaking the call for the others. Once the last
+// waiting caller is interrupted the call is cancelled, nobody needs its price any more
+public class CachingPriceRetriever extends PriceRetriever {
+
+    // default loader: calls in flight at once and calls queued behind them,
+    // requests beyond that fail and are not cached
+    private static final int LOADER_THREADS = 64;
+    private static final int LOADER_QUEUE = 1024;
+
+    private final PriceRetriever delegate;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Executor loader;
+
+    private final ConcurrentHashMap<Key, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public CachingPriceRetriever(PriceRetriever delegate, long ttl, TimeUnit unit, int maxSize) {
+        this(delegate, ttl, unit, maxSize, newLoader());
+    }
+
+    public CachingPriceRetriever(PriceRetriever delegate, long ttl, TimeUnit unit, int maxSize, Executor loader) {
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = maxSize;
+        this.loader = loader;
+    }
+
+    @Override
+    public double getPrice(long itemId, long shopId) {
+        Key key = new Key(itemId, shopId);
+        long now = System.nanoTime();
+
+        while (true) {
+            Entry entry = cache.get(key);
+            if (entry == null || entry.isExpired(now) || entry.isAbandoned()) {
+                // the creator is the first waiter of a new entry
+                Entry created = new Entry();
+                entry = cache.compute(key, (k, old) ->
+                        old == null || old.isExpired(now) || old.isAbandoned() ? created : old);
+                if (entry == created) {
+                    load(key, created);
+                    return await(key, created);
+                }
+            }
+            Double cached = entry.getNow();
+            if (cached != null) {
+                return cached;
+            }
+            // an entry abandoned in the meantime is replaced on the next pass
+            if (entry.join()) {
+                return await(key, entry);
+            }
+        }
+    }
+
+    private double await(Key key, Entry entry) {
+        boolean interrupted = false;
+        try {
+            return entry.await();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            if (entry.leaveInterrupted()) {
+                cache.remove(key, entry);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for price", e);
+        } finally {
+            if (!interrupted) {
+                entry.leave();
+            }
+        }
+    }
+
+    private void load(Key key, Entry entry) {
+        FutureTask<Void> call = new FutureTask<>(() -> {
+            try {
+                double price = delegate.getPrice(key.itemId, key.shopId);
+                entry.complete(price, System.nanoTime() + ttlNanos);
+                evictIfNeeded();
+            } catch (Throwable e) {
+                // failures are not cached, the next request tries again
+                cache.remove(key, entry);
+                entry.fail(e);
+            }
+        }, null);
+        entry.call = call;
+        try {
+            loader.execute(call);
+        } catch (RejectedExecutionException e) {
+            cache.remove(key, entry);
+            entry.fail(e);
+        }
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private void evictIfNeeded() {
+        if (cache.size() <= maxSize || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            cache.values().removeIf(entry -> entry.isExpired(now));
+            // still too big: drop completed entries in iteration order, which is close to random
+            Iterator<Entry> it = cache.values().iterator();
+            while (cache.size() > maxSize && it.hasNext()) {
+                if (it.next().isCompleted()) {
+                    it.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Entry {
+        private static final long IN_FLIGHT = Long.MAX_VALUE;
+
+        private final CompletableFuture<Double> price = new CompletableFuture<>();
+        private volatile long expiresAt = IN_FLIGHT;
+        private volatile Future<?> call;
+        // callers waiting for the price, -1 once the call is abandoned
+        private final AtomicInteger waiters = new AtomicInteger(1);
+
+        boolean join() {
+            while (true) {
+                int count = waiters.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (waiters.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void leave() {
+            waiters.decrementAndGet();
+        }
+
+        // An interrupted caller leaves before the price is known. The last one cancels the call
+        // and returns true, the entry must not be used any more then
+        boolean leaveInterrupted() {
+            if (waiters.decrementAndGet() > 0 || price.isDone() || !waiters.compareAndSet(0, -1)) {
+                return false;
+            }
+            Future<?> loading = call;
+            if (loading != null) {
+                loading.cancel(true);
+            }
+            price.cancel(false);
+            return true;
+        }
+
+        boolean isAbandoned() {
+            return waiters.get() < 0;
+        }
+
+        // the price if it is already known, without counting the caller as a waiter
+        Double getNow() {
+            return price.isDone() && !price.isCompletedExceptionally() ? price.join() : null;
+        }
+
+        boolean isCompleted() {
+            return expiresAt != IN_FLIGHT;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != IN_FLIGHT && now - expiresAt >= 0;
+        }
+
+        void complete(double value, long expiresAt) {
+            this.expiresAt = expiresAt;
+            price.complete(value);
+        }
+
+        void fail(Throwable e) {
+            price.completeExceptionally(e);
+        }
+
+        double await() throws InterruptedException {
+            try {
+                return price.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private static ExecutorService newLoader() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS,
+                30L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(LOADER_QUEUE),
+                r -> {
+                    Thread t = new Thread(r);
+                    t.setName("CachingPriceRetriever_" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class Key {
+        private final long itemId;
+        private final long shopId;
+
+        Key(long itemId, long shopId) {
+            this.itemId = itemId;
+            this.shopId = shopId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return itemId == key.itemId && shopId == key.shopId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(itemId) + Long.hashCode(shopId);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Where PriceAggregator runs blocking getPrice calls. In every mode deadlines, shop timeouts
+// and hedges run on one scheduler thread shared by all aggregators, never on ForkJoinPool.commonPool,
+// and the aggregator limits the calls in flight itself, whatever the mode allows
+public enum ExecutionMode {
+
+    // fixed pool of platform threads, a few dozen calls at once
+    PLATFORM_POOL {
+        @Override
+        ExecutorService newExecutor() {
+            return newPool(PLATFORM_POOL_SIZE, 1L);
+        }
+    },
+
+    // a virtual thread per call, so the number of calls in flight is not limited by OS threads.
+    // Falls back to ELASTIC_IO on runtimes without virtual threads (before Java 21)
+    VIRTUAL_THREADS {
+        @Override
+        ExecutorService newExecutor() {
+            try {
+                Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return ELASTIC_IO.newExecutor();
+            }
+        }
+    },
+
+    // large pool that grows with the load and drops idle threads,
+    // kept apart from ForkJoinPool.commonPool so blocking calls don't starve it
+    ELASTIC_IO {
+        @Override
+        ExecutorService newExecutor() {
+            return newPool(ELASTIC_POOL_SIZE, 30L);
+        }
+    };
+
+    private static final int PLATFORM_POOL_SIZE = 64;
+    private static final int ELASTIC_POOL_SIZE = 1024;
+
+    abstract ExecutorService newExecutor();
+
+    private static ExecutorService newPool(int size, long keepAliveSeconds) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size,
+                keepAliveSeconds, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r);
+                    t.setName("PriceAggregator_" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        // idle aggregators don't keep threads
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,111 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Arrays;
+
+// Open addressing long -> double map without boxing, for batch results.
+// Not thread safe
+public class LongDoubleMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private double[] values;
+    private int size;
+    // a key equal to the EMPTY marker is kept aside
+    private boolean hasEmptyKey;
+    private double emptyKeyValue;
+
+    public LongDoubleMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new double[capacity];
+    }
+
+    public void put(long key, double value) {
+        if (key == EMPTY) {
+            if (!hasEmptyKey) {
+                hasEmptyKey = true;
+                size++;
+            }
+            emptyKeyValue = value;
+            return;
+        }
+        int i = indexOf(key);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+        if (size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    // defaultValue if there is no such key
+    public double get(long key, double defaultValue) {
+        if (key == EMPTY) {
+            return hasEmptyKey ? emptyKeyValue : defaultValue;
+        }
+        int i = indexOf(key);
+        return keys[i] == EMPTY ? defaultValue : values[i];
+    }
+
+    // NaN if there is no such key
+    public double get(long key) {
+        return get(key, Double.NaN);
+    }
+
+    public boolean containsKey(long key) {
+        return key == EMPTY ? hasEmptyKey : keys[indexOf(key)] != EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        if (hasEmptyKey) {
+            result[n++] = EMPTY;
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    // slot holding key or the empty slot where it goes
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        values = new double[oldKeys.length * 2];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = indexOf(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    // ids are often sequential, spread them over the table
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,12 +1,56 @@
 package course.concurrency.m2_async.cf.min_price;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleConsumer;
 
 public class PriceAggregator {
 
+    // whole getMinPrice call must fit into 3 seconds
+    private static final long TIMEOUT_MILLIS = 2_800;
+
+    // Deadlines, shop timeouts and hedges of all aggregators. Timer tasks only complete and cancel
+    // futures, so one thread is enough and the thread count doesn't grow with the load
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("PriceAggregator_scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // getPrice calls in flight at once, whatever the executor is: with virtual threads
+    // or the elastic pool nothing else would stop a batch from calling every shop at once
+    private static final int MAX_CONCURRENT_REQUESTS = 1024;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    private final ConcurrentHashMap<Long, ShopStats> shopStats = new ConcurrentHashMap<>();
+
     private PriceRetriever priceRetriever = new PriceRetriever();
 
+    public PriceAggregator() {
+        this(ExecutionMode.PLATFORM_POOL);
+    }
+
+    public PriceAggregator(ExecutionMode mode) {
+        this(mode, MAX_CONCURRENT_REQUESTS);
+    }
+
+    public PriceAggregator(ExecutionMode mode, int maxConcurrentRequests) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+        this.executor = mode.newExecutor();
+        this.permits = new Semaphore(maxConcurrentRequests);
+    }
+
     public void setPriceRetriever(PriceRetriever priceRetriever) {
         this.priceRetriever = priceRetriever;
     }
@@ -17,8 +61,306 @@ public class PriceAggregator {
         this.shopIds = shopIds;
     }
 
+    // min over the shops that answered in time, NaN if no one did
     public double getMinPrice(long itemId) {
-        // place for your code
-        return 0;
+        return getMinPrice(itemId, Double.NEGATIVE_INFINITY, price -> {}).join();
+    }
+
+    // Passes every new best price to listener as shops answer. Completes with the min so far when
+    // all shops answered, a price <= acceptablePrice arrived or the deadline passed; requests to
+    // the remaining shops are cancelled then. Completes exceptionally if listener throws.
+    // Listener runs on the executor, dependent stages too: never on the shared scheduler thread
+    public CompletableFuture<Double> getMinPrice(long itemId, double acceptablePrice, DoubleConsumer listener) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        MinPriceRequest request = startRequest(itemId, acceptablePrice, listener, deadline);
+        SCHEDULER.schedule(request::finish, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        // the request is completed by whoever ends it, the scheduler included
+        return request.result.whenCompleteAsync((price, e) -> {}, executor);
+    }
+
+    // Min prices of all items, NaN for items no shop answered in time. Duplicate ids are asked once.
+    // All items share the executor and one deadline, so a batch takes no more threads
+    // and no more time than a single getMinPrice; calls still queued at the deadline are cancelled
+    public LongDoubleMap getMinPrices(long[] itemIds) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        long[] distinctIds = Arrays.stream(itemIds).distinct().toArray();
+
+        MinPriceRequest[] requests = new MinPriceRequest[distinctIds.length];
+        for (int i = 0; i < distinctIds.length; i++) {
+            requests[i] = startRequest(distinctIds[i], Double.NEGATIVE_INFINITY, price -> {}, deadline);
+        }
+        SCHEDULER.schedule(() -> {
+            for (MinPriceRequest request : requests) {
+                request.finish();
+            }
+        }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+        LongDoubleMap prices = new LongDoubleMap(distinctIds.length);
+        for (int i = 0; i < distinctIds.length; i++) {
+            prices.put(distinctIds[i], requests[i].result.join());
+        }
+        return prices;
+    }
+
+    private MinPriceRequest startRequest(long itemId, double acceptablePrice, DoubleConsumer listener, long deadline) {
+        MinPriceRequest request = new MinPriceRequest(shopIds.size(), acceptablePrice, listener);
+        for (Long shopId : shopIds) {
+            requestShop(request, itemId, shopId, deadline);
+        }
+        return request;
+    }
+
+    // Every shop gets its own timeout from its recent latencies (never past the deadline),
+    // and a second, hedged request if it has been running longer than its usual p95.
+    // Shops that keep failing are skipped for a while, so they don't hold executor threads
+    private void requestShop(MinPriceRequest request, long itemId, long shopId, long deadline) {
+        ShopStats stats = shopStats.computeIfAbsent(shopId, id -> new ShopStats());
+        long now = System.nanoTime();
+        if (!stats.allowRequest(now)) {
+            request.shopDone();
+            return;
+        }
+
+        long timeout = Math.min(deadline - now, stats.timeoutNanos());
+        ShopRequest shop = new ShopRequest(stats, timeout);
+        Runnable retrieval = () -> {
+            long start = System.nanoTime();
+            Double price = null;
+            boolean failed = false;
+            try {
+                price = priceRetriever.getPrice(itemId, shopId);
+            } catch (Exception e) {
+                // a failed shop doesn't break the others
+                failed = true;
+            }
+            // only the call that answers for the shop says something about it: the others
+            // were cancelled, timed out or lost to a hedged call
+            if (!shop.answer()) {
+                return;
+            }
+            if (failed) {
+                stats.recordFailure(System.nanoTime());
+            } else {
+                stats.recordSuccess(System.nanoTime() - start);
+            }
+            try {
+                if (price != null) {
+                    request.offer(price);
+                }
+            } finally {
+                request.shopDone();
+            }
+        };
+        // A call that is still queued, or waits for a permit, is not slow, a hedge would only
+        // queue behind it. So the hedge delay counts from the moment the first call starts
+        long hedgeDelay = stats.hedgeDelayNanos();
+        long shopDeadline = now + timeout;
+        Runnable firstCall = () -> {
+            if (shop.start() && hedgeDelay >= 0 && shopDeadline - (shop.startedAt + hedgeDelay) > 0) {
+                SCHEDULER.schedule(() -> {
+                    if (!shop.isAnswered()) {
+                        request.track(shop, executor.submit(() -> withPermit(shopDeadline, retrieval)));
+                    }
+                }, hedgeDelay, TimeUnit.NANOSECONDS);
+            }
+            retrieval.run();
+        };
+        request.track(shop, executor.submit(() -> withPermit(shopDeadline, firstCall)));
+
+        SCHEDULER.schedule(() -> {
+            if (shop.timeOut()) {
+                request.shopDone();
+            }
+        }, timeout, TimeUnit.NANOSECONDS);
+    }
+
+    // A call that gets no permit before the shop times out is dropped, the shop timeout answers for it
+    private void withPermit(long until, Runnable call) {
+        try {
+            if (!permits.tryAcquire(until - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            // cancelled while waiting
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            call.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Calls to one shop: the first call to finish, the shop timeout or the end of the request
+    // answers for the shop
+    private static class ShopRequest {
+        private final ShopStats stats;
+        private final long timeoutNanos;
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private volatile boolean started;
+        private volatile long startedAt;
+        private final Queue<Future<?>> calls = new ConcurrentLinkedQueue<>();
+
+        ShopRequest(ShopStats stats, long timeoutNanos) {
+            this.stats = stats;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        // true for the first call to start
+        synchronized boolean start() {
+            if (started) {
+                return false;
+            }
+            startedAt = System.nanoTime();
+            started = true;
+            return true;
+        }
+
+        boolean answer() {
+            return answered.compareAndSet(false, true);
+        }
+
+        boolean isAnswered() {
+            return answered.get();
+        }
+
+        void add(Future<?> call) {
+            calls.add(call);
+            if (isAnswered()) {
+                call.cancel(true);
+            }
+        }
+
+        void cancel() {
+            calls.forEach(call -> call.cancel(true));
+        }
+
+        // answers for the shop if no call did, returns false otherwise
+        boolean timeOut() {
+            if (!answer()) {
+                return false;
+            }
+            // A call that is still queued, or started too late to get at least half of its time
+            // (e.g. it waited behind a big batch), says nothing about the shop
+            long now = System.nanoTime();
+            if (started && now - startedAt >= timeoutNanos / 2) {
+                stats.recordFailure(now);
+            }
+            cancel();
+            return true;
+        }
+
+        // the request is over, calls that are still running answer for nobody.
+        // At the deadline they have timed out
+        void abandon(boolean expired) {
+            if (expired) {
+                timeOut();
+            } else {
+                answer();
+                cancel();
+            }
+        }
+    }
+
+    private static class MinPriceRequest {
+        private final CompletableFuture<Double> result = new CompletableFuture<>();
+        private final AtomicInteger remainingShops;
+        private final double acceptablePrice;
+        private final DoubleConsumer listener;
+
+        // guarded by this
+        private double minPrice = Double.NaN;
+        private boolean completing;
+        // completed at the deadline rather than by an acceptable price or a failing listener
+        private volatile boolean expired;
+
+        // held while listener runs, so that it sees improvements one by one and in order
+        private final ReentrantLock delivery = new ReentrantLock();
+        // guarded by delivery
+        private double delivered = Double.NaN;
+
+        private final Queue<ShopRequest> shops = new ConcurrentLinkedQueue<>();
+
+        MinPriceRequest(int shopCount, double acceptablePrice, DoubleConsumer listener) {
+            this.remainingShops = new AtomicInteger(shopCount);
+            this.acceptablePrice = acceptablePrice;
+            this.listener = listener;
+            result.whenComplete((price, ex) -> shops.forEach(shop -> shop.abandon(expired)));
+            if (shopCount == 0) {
+                finish();
+            }
+        }
+
+        void track(ShopRequest shop, Future<?> call) {
+            shop.add(call);
+            shops.add(shop);
+            if (result.isDone()) {
+                shop.abandon(expired);
+            }
+        }
+
+        // Listener and completion run outside the monitor, so a slow listener or a dependent
+        // stage never holds up finish() on the scheduler. A price that was beaten before
+        // its turn to be delivered is not passed to listener
+        void offer(double price) {
+            synchronized (this) {
+                if (completing || !(Double.isNaN(minPrice) || price < minPrice)) {
+                    return;
+                }
+                minPrice = price;
+            }
+
+            RuntimeException failure = null;
+            delivery.lock();
+            try {
+                if (result.isDone() || !(Double.isNaN(delivered) || price < delivered)) {
+                    return;
+                }
+                delivered = price;
+                listener.accept(price);
+            } catch (RuntimeException e) {
+                // the caller's listener is broken, not the shop
+                failure = e;
+            } finally {
+                delivery.unlock();
+            }
+
+            if (failure != null) {
+                if (claimCompletion(false)) {
+                    result.completeExceptionally(failure);
+                }
+            } else if (price <= acceptablePrice && claimCompletion(false)) {
+                result.complete(price);
+            }
+        }
+
+        // only one caller gets to complete result
+        private synchronized boolean claimCompletion(boolean atDeadline) {
+            if (completing) {
+                return false;
+            }
+            completing = true;
+            expired = atDeadline;
+            return true;
+        }
+
+        void shopDone() {
+            if (remainingShops.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+
+        // at the deadline or once every shop answered
+        void finish() {
+            double price;
+            synchronized (this) {
+                if (!claimCompletion(true)) {
+                    return;
+                }
+                price = minPrice;
+            }
+            result.complete(price);
+        }
     }
 }
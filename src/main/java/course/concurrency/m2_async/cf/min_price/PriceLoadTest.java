@@ -0,0 +1,103 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import course.concurrency.m2_async.cf.min_price.SimulatedPriceRetriever.Latency;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sends a steady rate of getMinPrice requests to simulated shops and prints
+// throughput, latency percentiles and the share of answers missing some shops.
+// Args: requests per second, seconds, warm up seconds, ExecutionMode
+public class PriceLoadTest {
+
+    private static final List<Long> SHOPS = List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+
+    public static void main(String[] args) throws InterruptedException {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int warmUpSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        ExecutionMode mode = args.length > 3 ? ExecutionMode.valueOf(args[3]) : ExecutionMode.PLATFORM_POOL;
+
+        SimulatedPriceRetriever shops = new SimulatedPriceRetriever(Latency.logNormal(100, 0.5), 0.01)
+                .setShop(7, Latency.bimodal(Latency.logNormal(200, 0.3), Latency.fixed(10_000), 0.05), 0.01)
+                .setShop(8, Latency.fixed(50), 0.2)
+                .setShop(9, Latency.logNormal(1_000, 1.0), 0.0);
+
+        // counts shops that answered each request, requests use unique item ids
+        ConcurrentHashMap<Long, Set<Long>> answered = new ConcurrentHashMap<>();
+        PriceAggregator aggregator = new PriceAggregator(mode);
+        aggregator.setShops(SHOPS);
+        aggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                double price = shops.getPrice(itemId, shopId);
+                Set<Long> shopIds = answered.get(itemId);
+                if (shopIds != null) {
+                    shopIds.add(shopId);
+                }
+                return price;
+            }
+        });
+
+        int total = rate * seconds;
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger partial = new AtomicInteger();
+        AtomicLong nextItem = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(total);
+
+        ScheduledExecutorService generator = Executors.newSingleThreadScheduledExecutor();
+        long warmUpEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmUpSeconds);
+        // warm up first, so that per shop timeouts and hedging have latencies to work with
+        ScheduledFuture<?> warmUp = generator.scheduleAtFixedRate(() -> {
+            if (System.nanoTime() < warmUpEnd) {
+                aggregator.getMinPrice(-1 - nextItem.getAndIncrement(), Double.NEGATIVE_INFINITY, p -> {});
+            }
+        }, 0, TimeUnit.SECONDS.toNanos(1) / rate, TimeUnit.NANOSECONDS);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmUpSeconds));
+        warmUp.cancel(false);
+
+        AtomicInteger sent = new AtomicInteger();
+        long start = System.nanoTime();
+        ScheduledFuture<?> load = generator.scheduleAtFixedRate(() -> {
+            int n = sent.getAndIncrement();
+            if (n >= total) {
+                return;
+            }
+            long itemId = n;
+            Set<Long> shopIds = ConcurrentHashMap.newKeySet();
+            answered.put(itemId, shopIds);
+            long requestStart = System.nanoTime();
+            aggregator.getMinPrice(itemId, Double.NEGATIVE_INFINITY, p -> {}).whenComplete((price, ex) -> {
+                latencies[n] = System.nanoTime() - requestStart;
+                if (shopIds.size() < SHOPS.size()) {
+                    partial.incrementAndGet();
+                }
+                answered.remove(itemId);
+                completed.incrementAndGet();
+                done.countDown();
+            });
+        }, 0, TimeUnit.SECONDS.toNanos(1) / rate, TimeUnit.NANOSECONDS);
+
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        load.cancel(false);
+        generator.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("mode %s, %d requests at %d/s%n", mode, total, rate);
+        System.out.printf("throughput %.1f requests/s%n", completed.get() * 1e9 / elapsed);
+        System.out.printf("latency p50 %d ms, p99 %d ms, p999 %d ms%n",
+                millis(latencies, 0.5), millis(latencies, 0.99), millis(latencies, 0.999));
+        System.out.printf("partial answers %.2f%%%n", 100.0 * partial.get() / total);
+    }
+
+    private static long millis(long[] sorted, double share) {
+        int index = Math.max(0, (int) Math.ceil(share * sorted.length) - 1);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[index]);
+    }
+}
@@ -0,0 +1,83 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Recent latencies and failures of one shop, used by PriceAggregator to pick
+// a timeout and a hedge delay for the shop and to skip it while it keeps failing
+class ShopStats {
+
+    private static final int WINDOW = 128;
+    // percentiles of fewer samples are noise
+    static final int MIN_SAMPLES = 20;
+
+    private static final int TIMEOUT_FACTOR = 2;
+    static final long MIN_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    static final int FAILURES_TO_OPEN = 5;
+    static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // guarded by this
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int next;
+    private int consecutiveFailures;
+
+    // computed from latencies on every success, so requests only read them; -1 until there are enough samples
+    private volatile long p95 = -1;
+    private volatile long p99 = -1;
+
+    private final AtomicLong openUntil = new AtomicLong();
+    private volatile boolean open;
+
+    // false while the circuit is open. After OPEN_NANOS a single probe goes through and the
+    // circuit stays open for the others: a success closes it, a failure keeps it open for
+    // another OPEN_NANOS. A probe that never reports is retried after OPEN_NANOS as well
+    boolean allowRequest(long now) {
+        if (!open) {
+            return true;
+        }
+        long until = openUntil.get();
+        return now - until >= 0 && openUntil.compareAndSet(until, now + OPEN_NANOS);
+    }
+
+    synchronized void recordSuccess(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+        consecutiveFailures = 0;
+        open = false;
+
+        if (samples >= MIN_SAMPLES) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            p95 = percentile(sorted, 0.95);
+            p99 = percentile(sorted, 0.99);
+        }
+    }
+
+    // a timeout or an exception
+    synchronized void recordFailure(long now) {
+        consecutiveFailures++;
+        if (consecutiveFailures >= FAILURES_TO_OPEN) {
+            openUntil.set(now + OPEN_NANOS);
+            open = true;
+        }
+    }
+
+    // TIMEOUT_FACTOR * p99, Long.MAX_VALUE until there are enough samples
+    long timeoutNanos() {
+        long p99 = this.p99;
+        return p99 < 0 ? Long.MAX_VALUE : Math.max(MIN_TIMEOUT_NANOS, p99 * TIMEOUT_FACTOR);
+    }
+
+    // p95, -1 until there are enough samples
+    long hedgeDelayNanos() {
+        return p95;
+    }
+
+    private static long percentile(long[] sorted, double share) {
+        return sorted[(int) Math.ceil(share * sorted.length) - 1];
+    }
+}
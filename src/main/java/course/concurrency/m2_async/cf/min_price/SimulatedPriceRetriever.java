@@ -0,0 +1,69 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Stand-in for shops with a given latency distribution and failure rate per shop.
+// Shops without their own settings use the default ones
+public class SimulatedPriceRetriever extends PriceRetriever {
+
+    public interface Latency {
+
+        long nextMillis(ThreadLocalRandom random);
+
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        // median * e^(sigma * N(0, 1)), a long right tail typical for remote calls
+        static Latency logNormal(double medianMillis, double sigma) {
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        // mostly fast, slowShare of calls take the slow path, e.g. fixed(10_000) for calls that time out
+        static Latency bimodal(Latency fast, Latency slow, double slowShare) {
+            return random -> random.nextDouble() < slowShare ? slow.nextMillis(random) : fast.nextMillis(random);
+        }
+    }
+
+    private static class Shop {
+        final Latency latency;
+        final double failureRate;
+
+        Shop(Latency latency, double failureRate) {
+            this.latency = latency;
+            this.failureRate = failureRate;
+        }
+    }
+
+    private final Shop defaultShop;
+    private final Map<Long, Shop> shops = new ConcurrentHashMap<>();
+
+    public SimulatedPriceRetriever(Latency latency, double failureRate) {
+        this.defaultShop = new Shop(latency, failureRate);
+    }
+
+    public SimulatedPriceRetriever setShop(long shopId, Latency latency, double failureRate) {
+        shops.put(shopId, new Shop(latency, failureRate));
+        return this;
+    }
+
+    @Override
+    public double getPrice(long itemId, long shopId) {
+        Shop shop = shops.getOrDefault(shopId, defaultShop);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = shop.latency.nextMillis(random);
+        boolean fails = random.nextDouble() < shop.failureRate;
+        try {
+            Thread.sleep(Math.max(0, delay));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Request to shop " + shopId + " is cancelled", e);
+        }
+        if (fails) {
+            throw new IllegalStateException("Shop " + shopId + " failed");
+        }
+        return random.nextDouble(1000);
+    }
+}
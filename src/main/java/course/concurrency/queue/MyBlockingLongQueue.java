@@ -0,0 +1,234 @@
+package course.concurrency.queue;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// MyBlockingQueue for primitive long values: the same put/take lock design,
+// but values are kept in a long[] so nothing is boxed or allocated per operation
+public class MyBlockingLongQueue {
+
+    private final long[] queue;
+
+    private int setIndex;
+    private int getIndex;
+
+    private final AtomicInteger totalCount = new AtomicInteger();
+
+    private final ReentrantLock putLock = new ReentrantLock();
+    private final ReentrantLock takeLock = new ReentrantLock();
+
+    private final Condition emptyCondition = takeLock.newCondition();
+    private final Condition fullCondition = putLock.newCondition();
+
+    public MyBlockingLongQueue(int size) {
+        this.queue = new long[size];
+    }
+
+    public void enqueue(long value) throws InterruptedException {
+        int count;
+        ReentrantLock l = putLock;
+        l.lockInterruptibly();
+        try {
+            while (totalCount.get() == queue.length) {
+                fullCondition.await();
+            }
+            _enqueue(value);
+            count = totalCount.getAndIncrement();
+            if (count + 1 < queue.length) {
+                fullCondition.signal();
+            }
+        } finally {
+            l.unlock();
+        }
+        if (count == 0) {
+            signalNotEmpty();
+        }
+    }
+
+    public long dequeue() throws InterruptedException {
+        long value;
+        int count;
+        ReentrantLock l = takeLock;
+        l.lockInterruptibly();
+        try {
+            while (totalCount.get() == 0) {
+                emptyCondition.await();
+            }
+            value = _dequeue();
+            count = totalCount.getAndDecrement();
+            if (count > 1) {
+                emptyCondition.signal();
+            }
+        } finally {
+            l.unlock();
+        }
+        if (count == queue.length) {
+            signalNotFull();
+        }
+        return value;
+    }
+
+    // Waits for free space at most timeout, returns false if the queue stayed full
+    public boolean offer(long value, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        int count;
+        ReentrantLock l = putLock;
+        l.lockInterruptibly();
+        try {
+            while (totalCount.get() == queue.length) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = fullCondition.awaitNanos(nanos);
+            }
+            _enqueue(value);
+            count = totalCount.getAndIncrement();
+            if (count + 1 < queue.length) {
+                fullCondition.signal();
+            }
+        } finally {
+            l.unlock();
+        }
+        if (count == 0) {
+            signalNotEmpty();
+        }
+        return true;
+    }
+
+    // Waits for a value at most timeout, returns valueIfEmpty if the queue stayed empty
+    public long poll(long timeout, TimeUnit unit, long valueIfEmpty) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long value;
+        int count;
+        ReentrantLock l = takeLock;
+        l.lockInterruptibly();
+        try {
+            while (totalCount.get() == 0) {
+                if (nanos <= 0L) {
+                    return valueIfEmpty;
+                }
+                nanos = emptyCondition.awaitNanos(nanos);
+            }
+            value = _dequeue();
+            count = totalCount.getAndDecrement();
+            if (count > 1) {
+                emptyCondition.signal();
+            }
+        } finally {
+            l.unlock();
+        }
+        if (count == queue.length) {
+            signalNotFull();
+        }
+        return value;
+    }
+
+    public void enqueueAll(long[] values) throws InterruptedException {
+        enqueueAll(values, values.length);
+    }
+
+    // Adds the first length values, waiting for space when the queue is full.
+    // Takes the lock once per run of free slots instead of once per value
+    public void enqueueAll(long[] values, int length) throws InterruptedException {
+        Objects.checkFromIndexSize(0, length, values.length);
+        int next = 0;
+        while (next < length) {
+            int added;
+            int count;
+            ReentrantLock l = putLock;
+            l.lockInterruptibly();
+            try {
+                while (totalCount.get() == queue.length) {
+                    fullCondition.await();
+                }
+                added = Math.min(length - next, queue.length - totalCount.get());
+                for (int i = 0; i < added; i++) {
+                    _enqueue(values[next + i]);
+                }
+                count = totalCount.getAndAdd(added);
+                if (count + added < queue.length) {
+                    fullCondition.signal();
+                }
+            } finally {
+                l.unlock();
+            }
+            next += added;
+            if (count == 0) {
+                signalNotEmpty();
+            }
+        }
+    }
+
+    // Moves up to max available values to the start of target without waiting,
+    // returns how many were moved
+    public int drainTo(long[] target, int max) {
+        int n = Math.min(max, target.length);
+        if (n <= 0) {
+            return 0;
+        }
+        int count;
+        ReentrantLock l = takeLock;
+        l.lock();
+        try {
+            n = Math.min(n, totalCount.get());
+            if (n == 0) {
+                return 0;
+            }
+            for (int i = 0; i < n; i++) {
+                target[i] = _dequeue();
+            }
+            count = totalCount.getAndAdd(-n);
+            if (count - n > 0) {
+                emptyCondition.signal();
+            }
+        } finally {
+            l.unlock();
+        }
+        if (count == queue.length) {
+            signalNotFull();
+        }
+        return n;
+    }
+
+    public int size() {
+        return totalCount.get();
+    }
+
+    private void _enqueue(long value) {
+        queue[setIndex++] = value;
+        if (setIndex == queue.length) {
+            setIndex = 0;
+        }
+    }
+
+    private long _dequeue() {
+        long value = queue[getIndex++];
+        if (getIndex == queue.length) {
+            getIndex = 0;
+        }
+        return value;
+    }
+
+    private void signalNotEmpty() {
+        ReentrantLock l = takeLock;
+        l.lock();
+        try {
+            emptyCondition.signal();
+        } finally {
+            l.unlock();
+        }
+    }
+
+    private void signalNotFull() {
+        ReentrantLock l = putLock;
+        l.lock();
+        try {
+            fullCondition.signal();
+        } finally {
+            l.unlock();
+        }
+    }
+}
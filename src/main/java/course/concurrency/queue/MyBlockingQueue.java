@@ -1,97 +1,407 @@
 package course.concurrency.queue;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class MyBlockingQueue<T> {
 
+    // Optional hook for debugging, always called after the lock is released
+    public interface Tracer {
 
-   private Object[] queue;
+        Tracer NONE = new Tracer() {
+            public void onEnqueue(int position) {}
 
+            public void onDequeue(int position) {}
+        };
+
+        Tracer CONSOLE = new Tracer() {
+            public void onEnqueue(int position) {
+                System.out.println("add to position " + position + " current thread " + Thread.currentThread().getName());
+            }
+
+            public void onDequeue(int position) {
+                System.out.println("removed from position " + position + " current thread " + Thread.currentThread().getName());
+            }
+        };
+
+        void onEnqueue(int position);
+
+        void onDequeue(int position);
+    }
+
+    private final Object[] queue;
+
+    // producers and consumers take different locks and meet only on totalCount
     private int setIndex;
     private int getIndex;
 
-    private int totalCount;
+    private final AtomicInteger totalCount = new AtomicInteger();
+
+    private final ReentrantLock putLock = new ReentrantLock();
+    private final ReentrantLock takeLock = new ReentrantLock();
 
-    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition emptyCondition = takeLock.newCondition();
+    private final Condition fullCondition = putLock.newCondition();
 
-    private final Condition emptyCondition = lock.newCondition();
-    private final Condition fullCondition = lock.newCondition();
+    private final Tracer tracer;
 
+    // null when metrics are disabled; enqueueTimes is then not tracked either
+    private final QueueMetrics metrics;
+    private final long[] enqueueTimes;
 
     public MyBlockingQueue(int size) {
-        ReentrantLock l = this.lock;
-        l.lock();
+        this(size, Tracer.NONE);
+    }
+
+    public MyBlockingQueue(int size, Tracer tracer) {
+        this(size, tracer, null);
+    }
+
+    public MyBlockingQueue(int size, Tracer tracer, QueueMetrics metrics) {
+        this.queue = new Object[size];
+        this.tracer = tracer;
+        this.metrics = metrics;
+        this.enqueueTimes = metrics == null ? null : new long[size];
+    }
+
+    public void enqueue(T value) throws InterruptedException {
+        int position;
+        int count;
+        ReentrantLock l = putLock;
+        l.lockInterruptibly();
         try {
-            queue = new Object[size];
+            awaitNotFull();
+            position = setIndex;
+            _enqueue(value);
+            count = totalCount.getAndIncrement();
+            if (metrics != null) {
+                metrics.onEnqueue(1, count + 1);
+            }
+            if (count + 1 < queue.length) {
+                fullCondition.signal();
+            }
         } finally {
             l.unlock();
         }
+        afterEnqueue(position, 1, count);
     }
 
-    public void enqueue(T value) throws InterruptedException {
-        ReentrantLock reentrantLock = lock;
-        reentrantLock.lock();
-        System.out.println(" enqueue locked " + Thread.currentThread().getName() + reentrantLock.toString());
+    public T dequeue() throws InterruptedException {
+        T value;
+        int position;
+        long enqueuedAt;
+        int count;
+        ReentrantLock l = takeLock;
+        l.lockInterruptibly();
         try {
-            while (queue.length == totalCount) {
-                fullCondition.await();
+            awaitNotEmpty();
+            position = getIndex;
+            enqueuedAt = enqueueTime(position);
+            value = _dequeue();
+            count = totalCount.getAndDecrement();
+            if (metrics != null) {
+                metrics.onDequeue(1);
+            }
+            if (count > 1) {
+                emptyCondition.signal();
+            }
+        } finally {
+            l.unlock();
+        }
+        afterDequeue(position, enqueuedAt, count);
+        return value;
+    }
+
+    // Waits for free space at most timeout, returns false if the queue stayed full
+    public boolean offer(T value, long timeout, TimeUnit unit) throws InterruptedException {
+        int position;
+        int count;
+        ReentrantLock l = putLock;
+        l.lockInterruptibly();
+        try {
+            if (!awaitNotFull(unit.toNanos(timeout))) {
+                return false;
             }
+            position = setIndex;
             _enqueue(value);
+            count = totalCount.getAndIncrement();
+            if (metrics != null) {
+                metrics.onEnqueue(1, count + 1);
+            }
+            if (count + 1 < queue.length) {
+                fullCondition.signal();
+            }
         } finally {
-            reentrantLock.unlock();
-            System.out.println(" enqueue unlocked " + Thread.currentThread().getName() + reentrantLock.toString());
-            System.out.println();
+            l.unlock();
         }
+        afterEnqueue(position, 1, count);
+        return true;
     }
 
-    public T dequeue() throws InterruptedException {
-        ReentrantLock l = lock;
-        l.lock();
-        System.out.println(" dequeue locked " + Thread.currentThread().getName() + l.toString());
+    // Waits for an element at most timeout, returns null if the queue stayed empty
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        T value;
+        int position;
+        long enqueuedAt;
+        int count;
+        ReentrantLock l = takeLock;
+        l.lockInterruptibly();
         try {
-            while (totalCount == 0) {
-                emptyCondition.await();
+            if (!awaitNotEmpty(unit.toNanos(timeout))) {
+                return null;
             }
+            position = getIndex;
+            enqueuedAt = enqueueTime(position);
+            value = _dequeue();
+            count = totalCount.getAndDecrement();
+            if (metrics != null) {
+                metrics.onDequeue(1);
+            }
+            if (count > 1) {
+                emptyCondition.signal();
+            }
+        } finally {
+            l.unlock();
+        }
+        afterDequeue(position, enqueuedAt, count);
+        return value;
+    }
 
-            return _dequeue();
+    // Adds all values, waiting for space when the queue is full.
+    // Takes the lock once per run of free slots instead of once per element
+    public void enqueueAll(Collection<? extends T> values) throws InterruptedException {
+        Iterator<? extends T> it = values.iterator();
+        while (it.hasNext()) {
+            int start = 0;
+            int added = 0;
+            int count = 0;
+            ReentrantLock l = putLock;
+            l.lockInterruptibly();
+            try {
+                awaitNotFull();
+                start = setIndex;
+                int free = queue.length - totalCount.get();
+                while (added < free && it.hasNext()) {
+                    _enqueue(it.next());
+                    added++;
+                }
+            } finally {
+                // publish what was added even if the iterator failed
+                if (added > 0) {
+                    count = totalCount.getAndAdd(added);
+                    if (metrics != null) {
+                        metrics.onEnqueue(added, count + added);
+                    }
+                    if (count + added < queue.length) {
+                        fullCondition.signal();
+                    }
+                }
+                l.unlock();
+                if (added > 0) {
+                    afterEnqueue(start, added, count);
+                }
+            }
+        }
+    }
+
+    // Moves up to max available elements to target without waiting, returns how many were moved
+    public int drainTo(Collection<? super T> target, int max) {
+        if (max <= 0) {
+            return 0;
+        }
+        int start;
+        int drained = 0;
+        int count = 0;
+        ReentrantLock l = takeLock;
+        l.lock();
+        try {
+            start = getIndex;
+            int n = Math.min(max, totalCount.get());
+            try {
+                while (drained < n) {
+                    // remove the element only once target has accepted it
+                    target.add((T) queue[getIndex]);
+                    if (metrics != null && QueueMetrics.isSampled(getIndex)) {
+                        metrics.onResidency(System.nanoTime() - enqueueTimes[getIndex]);
+                    }
+                    _dequeue();
+                    drained++;
+                }
+            } finally {
+                if (drained > 0) {
+                    count = totalCount.getAndAdd(-drained);
+                    if (metrics != null) {
+                        metrics.onDequeue(drained);
+                    }
+                    if (count - drained > 0) {
+                        emptyCondition.signal();
+                    }
+                }
+            }
         } finally {
             l.unlock();
-            System.out.println(" dequeue unlocked " + Thread.currentThread().getName() + l.toString());
-            System.out.println();
         }
+        if (drained > 0 && count == queue.length) {
+            signalNotFull();
+        }
+        for (int i = 0; i < drained; i++) {
+            tracer.onDequeue((start + i) % queue.length);
+        }
+        return drained;
     }
 
     public int size() {
-        return totalCount;
+        return totalCount.get();
     }
 
-    private void _enqueue(T value) {
-        queue[setIndex++] = value;
+    public QueueMetrics getMetrics() {
+        return metrics;
+    }
+
+    // putLock is held
+    private void awaitNotFull() throws InterruptedException {
+        if (totalCount.get() < queue.length) {
+            return;
+        }
+        long blockedAt = metrics == null ? 0L : metrics.producerBlocked();
+        try {
+            while (totalCount.get() == queue.length) {
+                fullCondition.await();
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.producerUnblocked(blockedAt);
+            }
+        }
+    }
+
+    // putLock is held, returns false on timeout
+    private boolean awaitNotFull(long nanos) throws InterruptedException {
+        if (totalCount.get() < queue.length) {
+            return true;
+        }
+        long blockedAt = metrics == null ? 0L : metrics.producerBlocked();
+        try {
+            while (totalCount.get() == queue.length) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = fullCondition.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            if (metrics != null) {
+                metrics.producerUnblocked(blockedAt);
+            }
+        }
+    }
+
+    // takeLock is held
+    private void awaitNotEmpty() throws InterruptedException {
+        if (totalCount.get() > 0) {
+            return;
+        }
+        long blockedAt = metrics == null ? 0L : metrics.consumerBlocked();
+        try {
+            while (totalCount.get() == 0) {
+                emptyCondition.await();
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.consumerUnblocked(blockedAt);
+            }
+        }
+    }
+
+    // takeLock is held, returns false on timeout
+    private boolean awaitNotEmpty(long nanos) throws InterruptedException {
+        if (totalCount.get() > 0) {
+            return true;
+        }
+        long blockedAt = metrics == null ? 0L : metrics.consumerBlocked();
+        try {
+            while (totalCount.get() == 0) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = emptyCondition.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            if (metrics != null) {
+                metrics.consumerUnblocked(blockedAt);
+            }
+        }
+    }
 
-        System.out.println("add to position " + (setIndex - 1));
+    // called without locks: wake up consumers and trace the added positions
+    private void afterEnqueue(int start, int added, int previousCount) {
+        if (previousCount == 0) {
+            signalNotEmpty();
+        }
+        for (int i = 0; i < added; i++) {
+            tracer.onEnqueue((start + i) % queue.length);
+        }
+    }
+
+    private void afterDequeue(int position, long enqueuedAt, int previousCount) {
+        if (previousCount == queue.length) {
+            signalNotFull();
+        }
+        if (metrics != null && QueueMetrics.isSampled(position)) {
+            metrics.onResidency(System.nanoTime() - enqueuedAt);
+        }
+        tracer.onDequeue(position);
+    }
+
+    private long enqueueTime(int position) {
+        return metrics != null && QueueMetrics.isSampled(position) ? enqueueTimes[position] : 0L;
+    }
+
+    private void recordEnqueueTime(int position) {
+        if (metrics != null && QueueMetrics.isSampled(position)) {
+            enqueueTimes[position] = System.nanoTime();
+        }
+    }
 
+    private void _enqueue(T value) {
+        recordEnqueueTime(setIndex);
+        queue[setIndex++] = value;
         if (setIndex == queue.length) {
             setIndex = 0;
         }
-        totalCount++;
-        emptyCondition.signal();
     }
 
     private T _dequeue() {
-
         T value = (T) queue[getIndex];
-        queue[getIndex++]=null;
-
-        System.out.println("removed from position " + (setIndex - 1) + " current thread " + Thread.currentThread().getName());
-
+        queue[getIndex++] = null;
         if (getIndex == queue.length) {
             getIndex = 0;
         }
-        totalCount--;
-        fullCondition.signal();
-
         return value;
     }
 
+    private void signalNotEmpty() {
+        ReentrantLock l = takeLock;
+        l.lock();
+        try {
+            emptyCondition.signal();
+        } finally {
+            l.unlock();
+        }
+    }
+
+    private void signalNotFull() {
+        ReentrantLock l = putLock;
+        l.lock();
+        try {
+            fullCondition.signal();
+        } finally {
+            l.unlock();
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package course.concurrency.queue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free bounded multi-producer/multi-consumer queue (D. Vyukov's algorithm).
+// Every slot has a sequence number telling whether it is ready to be written or read,
+// so producers and consumers only compete on a CAS of tail or head respectively
+public class MyMpmcQueue<T> extends MpmcPadHead {
+
+    private static final VarHandle TAIL;
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TAIL = lookup.findVarHandle(MpmcTail.class, "tail", long.class);
+            HEAD = lookup.findVarHandle(MpmcHead.class, "head", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // size is rounded up to a power of two
+    public MyMpmcQueue(int size) {
+        this(size, WaitStrategy.PARK);
+    }
+
+    public MyMpmcQueue(int size, WaitStrategy waitStrategy) {
+        int capacity = Math.max(2, Integer.highestOneBit(size));
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.buffer = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public boolean offer(T value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long position = tail;
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (TAIL.compareAndSet(this, position, position + 1)) {
+                    buffer[index] = value;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // the slot still holds an element from the previous lap
+                return false;
+            }
+            position = tail;
+        }
+    }
+
+    public T poll() {
+        long position = head;
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - (position + 1);
+            if (diff == 0) {
+                if (HEAD.compareAndSet(this, position, position + 1)) {
+                    T value = (T) buffer[index];
+                    buffer[index] = null;
+                    sequences.lazySet(index, position + mask + 1);
+                    return value;
+                }
+            } else if (diff < 0) {
+                // the slot is not written yet
+                return null;
+            }
+            position = head;
+        }
+    }
+
+    public void enqueue(T value) throws InterruptedException {
+        int attempt = 0;
+        while (!offer(value)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempt++);
+        }
+    }
+
+    public T dequeue() throws InterruptedException {
+        int attempt = 0;
+        T value;
+        while ((value = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempt++);
+        }
+        return value;
+    }
+
+    public int size() {
+        long size = tail - head;
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
+
+// head and tail are separated by 64+ bytes of padding on both sides,
+// so producers and consumers don't invalidate each other's cache line
+
+abstract class MpmcPadBefore {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MpmcTail extends MpmcPadBefore {
+    volatile long tail;
+}
+
+abstract class MpmcPadTail extends MpmcTail {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class MpmcHead extends MpmcPadTail {
+    volatile long head;
+}
+
+abstract class MpmcPadHead extends MpmcHead {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
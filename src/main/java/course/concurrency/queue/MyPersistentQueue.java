@@ -0,0 +1,257 @@
+package course.concurrency.queue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Blocking queue of byte records kept in a memory-mapped file, so its content survives a JVM restart.
+//
+// File layout: a 64 byte header (magic, capacity, head, tail) followed by a ring of `capacity` bytes.
+// Every record is an int length followed by the payload. A record never wraps around the end of the
+// ring: when it doesn't fit, the rest of the ring is skipped (marked with WRAP if there is room for it).
+// head and tail only grow, the ring offset is position % capacity.
+//
+// A record is written first and then the tail checkpoint is moved, and the head checkpoint is moved
+// only after the consumer has processed the record, so a crashed JVM never exposes a half-written
+// record and never loses a record that wasn't processed. Mapped pages outlive the process; call
+// sync() to also survive an OS crash.
+public class MyPersistentQueue implements Closeable {
+
+    private static final int MAGIC = 0x4D505131;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int HEAD_OFFSET = 8;
+    private static final int TAIL_OFFSET = 16;
+
+    private static final int RECORD_HEADER = 4;
+    private static final int WRAP = -1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private long head;
+    private long tail;
+    private int count;
+    private boolean closed;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // held by the consumer for the whole dequeue, so records are processed one by one in order
+    // while producers only wait for the short peek and commit steps
+    private final ReentrantLock consumerLock = new ReentrantLock();
+
+    private final Condition emptyCondition = lock.newCondition();
+    private final Condition fullCondition = lock.newCondition();
+
+    // opens the queue stored in file or creates a new one with the given capacity in bytes
+    public MyPersistentQueue(Path file, int capacity) throws IOException {
+        if (capacity < 2 * RECORD_HEADER || capacity > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Unsupported capacity " + capacity);
+        }
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        if (!created && channel.size() != HEADER_SIZE + capacity) {
+            channel.close();
+            throw new IllegalArgumentException(file + " holds a queue of another capacity");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        this.capacity = capacity;
+
+        if (created) {
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putLong(HEAD_OFFSET, 0);
+            buffer.putLong(TAIL_OFFSET, 0);
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+        } else if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(CAPACITY_OFFSET) != capacity) {
+            channel.close();
+            throw new IOException(file + " is not a queue file");
+        }
+        this.head = buffer.getLong(HEAD_OFFSET);
+        this.tail = buffer.getLong(TAIL_OFFSET);
+        this.count = countRecords();
+    }
+
+    // largest payload that is guaranteed to fit, whatever the current ring offset is
+    public int maxRecordSize() {
+        return capacity / 2 - RECORD_HEADER;
+    }
+
+    public void enqueue(byte[] record) throws InterruptedException {
+        enqueue(ByteBuffer.wrap(record));
+    }
+
+    // copies the remaining bytes of record, its position is not changed
+    public void enqueue(ByteBuffer record) throws InterruptedException {
+        int length = record.remaining();
+        if (length > maxRecordSize()) {
+            throw new IllegalArgumentException("Record of " + length + " bytes exceeds " + maxRecordSize());
+        }
+        lock.lockInterruptibly();
+        try {
+            ensureOpen();
+            while (capacity - (tail - head) < requiredSpace(length)) {
+                fullCondition.await();
+                ensureOpen();
+            }
+            _enqueue(record, length);
+            emptyCondition.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits for a record and passes it to consumer as a read-only view of the mapped file, without copying.
+    // The view is valid only inside consumer. The record is removed after consumer returns normally,
+    // if it throws the record stays in the queue. consumer runs without the queue lock, producers
+    // keep appending meanwhile: they never write into the space between head and tail
+    public void dequeue(Consumer<ByteBuffer> consumer) throws InterruptedException {
+        consumerLock.lockInterruptibly();
+        try {
+            int offset;
+            int length;
+            lock.lockInterruptibly();
+            try {
+                ensureOpen();
+                while (count == 0) {
+                    emptyCondition.await();
+                    ensureOpen();
+                }
+                skipWrap();
+                offset = (int) (head % capacity);
+                length = buffer.getInt(HEADER_SIZE + offset);
+            } finally {
+                lock.unlock();
+            }
+
+            ByteBuffer record = buffer.duplicate();
+            record.position(HEADER_SIZE + offset + RECORD_HEADER);
+            record.limit(HEADER_SIZE + offset + RECORD_HEADER + length);
+            consumer.accept(record.slice().asReadOnlyBuffer());
+
+            lock.lock();
+            try {
+                ensureOpen();
+                head += RECORD_HEADER + length;
+                count--;
+                buffer.putLong(HEAD_OFFSET, head);
+                // freed space may be enough for any of the waiting producers
+                fullCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    public byte[] dequeue() throws InterruptedException {
+        byte[][] result = new byte[1][];
+        dequeue(record -> {
+            result[0] = new byte[record.remaining()];
+            record.get(result[0]);
+        });
+        return result[0];
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // flushes mapped pages to the disk
+    public void sync() {
+        lock.lock();
+        try {
+            ensureOpen();
+            buffer.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // blocked and later calls throw IllegalStateException. A record that is being processed
+    // while the queue is closed is not removed and is delivered again after reopening
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            emptyCondition.signalAll();
+            fullCondition.signalAll();
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Queue is closed");
+        }
+    }
+
+    private int requiredSpace(int length) {
+        int untilEnd = capacity - (int) (tail % capacity);
+        int recordSize = RECORD_HEADER + length;
+        return untilEnd < recordSize ? untilEnd + recordSize : recordSize;
+    }
+
+    private void _enqueue(ByteBuffer record, int length) {
+        int offset = (int) (tail % capacity);
+        int untilEnd = capacity - offset;
+        if (untilEnd < RECORD_HEADER + length) {
+            if (untilEnd >= RECORD_HEADER) {
+                buffer.putInt(HEADER_SIZE + offset, WRAP);
+            }
+            tail += untilEnd;
+            offset = 0;
+        }
+
+        ByteBuffer target = buffer.duplicate();
+        target.position(HEADER_SIZE + offset + RECORD_HEADER);
+        target.put(record.duplicate());
+        buffer.putInt(HEADER_SIZE + offset, length);
+
+        tail += RECORD_HEADER + length;
+        count++;
+        buffer.putLong(TAIL_OFFSET, tail);
+    }
+
+    // moves head to the start of the ring if the next record was written there
+    private void skipWrap() {
+        int offset = (int) (head % capacity);
+        int untilEnd = capacity - offset;
+        if (untilEnd < RECORD_HEADER || buffer.getInt(HEADER_SIZE + offset) == WRAP) {
+            head += untilEnd;
+        }
+    }
+
+    private int countRecords() {
+        long savedHead = head;
+        int records = 0;
+        while (head != tail) {
+            skipWrap();
+            head += RECORD_HEADER + buffer.getInt(HEADER_SIZE + (int) (head % capacity));
+            records++;
+        }
+        head = savedHead;
+        return records;
+    }
+}
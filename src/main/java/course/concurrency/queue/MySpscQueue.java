@@ -0,0 +1,132 @@
+package course.concurrency.queue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Bounded queue for exactly one producer thread and one consumer thread.
+// Each side owns its index and publishes it with a release store, no CAS is needed.
+// Each side also caches the other side's index and rereads it only when the cached value
+// says the queue is full (producer) or empty (consumer), so the shared lines are rarely touched
+public class MySpscQueue<T> extends SpscPadHead {
+
+    private static final VarHandle TAIL;
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TAIL = lookup.findVarHandle(SpscTail.class, "tail", long.class);
+            HEAD = lookup.findVarHandle(SpscHead.class, "head", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] buffer;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // size is rounded up to a power of two
+    public MySpscQueue(int size) {
+        this(size, WaitStrategy.PARK);
+    }
+
+    public MySpscQueue(int size, WaitStrategy waitStrategy) {
+        int capacity = Math.max(1, Integer.highestOneBit(size));
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.buffer = new Object[capacity];
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    // producer thread only
+    public boolean offer(T value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long position = tail;
+        if (position - headCache >= buffer.length) {
+            headCache = (long) HEAD.getAcquire(this);
+            if (position - headCache >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) (position & mask)] = value;
+        TAIL.setRelease(this, position + 1);
+        return true;
+    }
+
+    // consumer thread only
+    public T poll() {
+        long position = head;
+        if (position >= tailCache) {
+            tailCache = (long) TAIL.getAcquire(this);
+            if (position >= tailCache) {
+                return null;
+            }
+        }
+        int index = (int) (position & mask);
+        T value = (T) buffer[index];
+        buffer[index] = null;
+        HEAD.setRelease(this, position + 1);
+        return value;
+    }
+
+    public void enqueue(T value) throws InterruptedException {
+        int attempt = 0;
+        while (!offer(value)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempt++);
+        }
+    }
+
+    public T dequeue() throws InterruptedException {
+        int attempt = 0;
+        T value;
+        while ((value = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempt++);
+        }
+        return value;
+    }
+
+    public int size() {
+        long head = (long) HEAD.getAcquire(this);
+        long tail = (long) TAIL.getAcquire(this);
+        return (int) Math.max(0, Math.min(tail - head, buffer.length));
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
+
+// producer fields and consumer fields live in different cache lines
+
+abstract class SpscPadBefore {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SpscTail extends SpscPadBefore {
+    long tail;
+    long headCache;
+}
+
+abstract class SpscPadTail extends SpscTail {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class SpscHead extends SpscPadTail {
+    long head;
+    long tailCache;
+}
+
+abstract class SpscPadHead extends SpscHead {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
@@ -0,0 +1,227 @@
+package course.concurrency.queue;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters of a single MyBlockingQueue.
+// Enqueue counters are written only under the queue's putLock and dequeue counters only under its takeLock,
+// so each has a single writer at a time and is a plain field published with a release store instead of
+// an atomic read-modify-write. Residency and wait times are written outside the locks and use LongAdder
+public class QueueMetrics implements QueueMetricsMXBean {
+
+    // bucket i counts elements that stayed in the queue for [2^(i-1), 2^i) nanoseconds
+    public static final int BUCKETS = 40;
+
+    // residency is measured for every RESIDENCY_SAMPLING-th slot only, timing each element
+    // would cost two System.nanoTime() calls per element and dominate an uncontended queue
+    public static final int RESIDENCY_SAMPLING = 64;
+
+    private static final VarHandle ENQUEUE_COUNT;
+    private static final VarHandle DEQUEUE_COUNT;
+    private static final VarHandle HIGH_WATER_MARK;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ENQUEUE_COUNT = lookup.findVarHandle(QueueMetrics.class, "enqueueCount", long.class);
+            DEQUEUE_COUNT = lookup.findVarHandle(QueueMetrics.class, "dequeueCount", long.class);
+            HIGH_WATER_MARK = lookup.findVarHandle(QueueMetrics.class, "highWaterMark", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // written under putLock
+    private long enqueueCount;
+    private int highWaterMark;
+    // written under takeLock
+    private long dequeueCount;
+
+    private final LongAdder fullWaitNanos = new LongAdder();
+    private final LongAdder emptyWaitNanos = new LongAdder();
+    private final AtomicInteger blockedProducers = new AtomicInteger();
+    private final AtomicInteger blockedConsumers = new AtomicInteger();
+    private final LongAdder[] residency = new LongAdder[BUCKETS];
+
+    public QueueMetrics() {
+        for (int i = 0; i < BUCKETS; i++) {
+            residency[i] = new LongAdder();
+        }
+    }
+
+    // putLock is held; only producers make the queue grow, so the high water mark has a single writer too
+    void onEnqueue(int added, int size) {
+        ENQUEUE_COUNT.setRelease(this, enqueueCount + added);
+        if (size > highWaterMark) {
+            HIGH_WATER_MARK.setRelease(this, size);
+        }
+    }
+
+    // takeLock is held
+    void onDequeue(int removed) {
+        DEQUEUE_COUNT.setRelease(this, dequeueCount + removed);
+    }
+
+    void onResidency(long nanos) {
+        residency[bucket(nanos)].increment();
+    }
+
+    static boolean isSampled(int position) {
+        return (position & (RESIDENCY_SAMPLING - 1)) == 0;
+    }
+
+    long producerBlocked() {
+        blockedProducers.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void producerUnblocked(long blockedAt) {
+        fullWaitNanos.add(System.nanoTime() - blockedAt);
+        blockedProducers.decrementAndGet();
+    }
+
+    long consumerBlocked() {
+        blockedConsumers.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void consumerUnblocked(long blockedAt) {
+        emptyWaitNanos.add(System.nanoTime() - blockedAt);
+        blockedConsumers.decrementAndGet();
+    }
+
+    private static int bucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    public long getEnqueueCount() {
+        return (long) ENQUEUE_COUNT.getAcquire(this);
+    }
+
+    public long getDequeueCount() {
+        return (long) DEQUEUE_COUNT.getAcquire(this);
+    }
+
+    public long getFullWaitNanos() {
+        return fullWaitNanos.sum();
+    }
+
+    public long getEmptyWaitNanos() {
+        return emptyWaitNanos.sum();
+    }
+
+    public int getBlockedProducers() {
+        return blockedProducers.get();
+    }
+
+    public int getBlockedConsumers() {
+        return blockedConsumers.get();
+    }
+
+    public int getHighWaterMark() {
+        return (int) HIGH_WATER_MARK.getAcquire(this);
+    }
+
+    public long[] getResidencyHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = residency[i].sum();
+        }
+        return histogram;
+    }
+
+    // values are read one by one while the queue keeps working, so they are only roughly consistent
+    public Snapshot snapshot() {
+        return new Snapshot(getEnqueueCount(), getDequeueCount(), getFullWaitNanos(), getEmptyWaitNanos(),
+                getBlockedProducers(), getBlockedConsumers(), getHighWaterMark(), getResidencyHistogram());
+    }
+
+    public ObjectName registerMBean(String queueName) throws JMException {
+        ObjectName name = new ObjectName("course.concurrency.queue:type=QueueMetrics,name=" + ObjectName.quote(queueName));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    public static final class Snapshot {
+        private final long enqueueCount;
+        private final long dequeueCount;
+        private final long fullWaitNanos;
+        private final long emptyWaitNanos;
+        private final int blockedProducers;
+        private final int blockedConsumers;
+        private final int highWaterMark;
+        private final long[] residencyHistogram;
+
+        private Snapshot(long enqueueCount, long dequeueCount, long fullWaitNanos, long emptyWaitNanos,
+                         int blockedProducers, int blockedConsumers, int highWaterMark, long[] residencyHistogram) {
+            this.enqueueCount = enqueueCount;
+            this.dequeueCount = dequeueCount;
+            this.fullWaitNanos = fullWaitNanos;
+            this.emptyWaitNanos = emptyWaitNanos;
+            this.blockedProducers = blockedProducers;
+            this.blockedConsumers = blockedConsumers;
+            this.highWaterMark = highWaterMark;
+            this.residencyHistogram = residencyHistogram;
+        }
+
+        public long getEnqueueCount() {
+            return enqueueCount;
+        }
+
+        public long getDequeueCount() {
+            return dequeueCount;
+        }
+
+        public long getFullWaitNanos() {
+            return fullWaitNanos;
+        }
+
+        public long getEmptyWaitNanos() {
+            return emptyWaitNanos;
+        }
+
+        public int getBlockedProducers() {
+            return blockedProducers;
+        }
+
+        public int getBlockedConsumers() {
+            return blockedConsumers;
+        }
+
+        public int getHighWaterMark() {
+            return highWaterMark;
+        }
+
+        public long[] getResidencyHistogram() {
+            return residencyHistogram.clone();
+        }
+
+        // upper bound in nanoseconds of the bucket holding the given share (0..1) of residency times
+        public long residencyPercentile(double share) {
+            long total = Arrays.stream(residencyHistogram).sum();
+            long seen = 0;
+            for (int i = 0; i < residencyHistogram.length; i++) {
+                seen += residencyHistogram[i];
+                if (seen > 0 && seen >= share * total) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "enqueued=" + enqueueCount + ", dequeued=" + dequeueCount
+                    + ", fullWaitNanos=" + fullWaitNanos + ", emptyWaitNanos=" + emptyWaitNanos
+                    + ", blockedProducers=" + blockedProducers + ", blockedConsumers=" + blockedConsumers
+                    + ", highWaterMark=" + highWaterMark
+                    + ", residencyP50=" + residencyPercentile(0.5) + "ns, residencyP99=" + residencyPercentile(0.99) + "ns";
+        }
+    }
+}
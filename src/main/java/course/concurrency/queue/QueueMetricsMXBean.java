@@ -0,0 +1,20 @@
+package course.concurrency.queue;
+
+public interface QueueMetricsMXBean {
+
+    long getEnqueueCount();
+
+    long getDequeueCount();
+
+    long getFullWaitNanos();
+
+    long getEmptyWaitNanos();
+
+    int getBlockedProducers();
+
+    int getBlockedConsumers();
+
+    int getHighWaterMark();
+
+    long[] getResidencyHistogram();
+}
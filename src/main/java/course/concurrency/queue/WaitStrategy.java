@@ -0,0 +1,43 @@
+package course.concurrency.queue;
+
+import java.util.concurrent.locks.LockSupport;
+
+// How lock-free queues wait in blocking enqueue/dequeue while the queue is full or empty
+public enum WaitStrategy {
+
+    // lowest latency, burns a core while waiting
+    SPIN {
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+
+    // spins for a while, then gives the core to other threads
+    YIELD {
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+
+    // spins, yields, then sleeps; cheapest for CPU when waits are long
+    PARK {
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (attempt < SPIN_TRIES * 2) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    abstract void idle(int attempt);
+}
@@ -0,0 +1,123 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuctionBenchmarks {
+
+    // Change WRITERS and READERS to experiment
+    public static final int WRITERS = 7;
+    public static final int READERS = 1;
+
+    @Param({"optimistic", "pessimistic", "stoppableOptimistic", "stoppablePessimistic"})
+    private String implementation;
+
+    // monotonic: almost every bid wins, random: almost every bid loses
+    @Param({"monotonic", "random"})
+    private String prices;
+
+    private Notifier notifier;
+    private Auction auction;
+
+    // Writer i bids i, i + WRITERS, i + 2 * WRITERS... Together the writers stay close to a single
+    // increasing sequence without sharing a counter, which would be measured instead of the auction
+    @State(Scope.Thread)
+    public static class PriceStream {
+        private static final AtomicInteger writers = new AtomicInteger();
+
+        private final int index = writers.getAndIncrement() % WRITERS;
+        private long step;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            step = 0;
+        }
+
+        long next(String prices) {
+            return "monotonic".equals(prices)
+                    ? index + ++step * WRITERS
+                    : ThreadLocalRandom.current().nextLong(1_000_000);
+        }
+    }
+
+    // zero-latency notifier, so that only the auction itself is measured
+    private static class SilentNotifier extends Notifier {
+        @Override
+        public void sendOutdatedMessage(Bid bid) {}
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AuctionBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        notifier = new SilentNotifier();
+        switch (implementation) {
+            case "optimistic":
+                auction = new AuctionOptimistic(notifier);
+                break;
+            case "pessimistic":
+                auction = new AuctionPessimistic(notifier);
+                break;
+            case "stoppableOptimistic":
+                auction = new AuctionStoppableOptimistic(notifier);
+                break;
+            case "stoppablePessimistic":
+                auction = new AuctionStoppablePessimistic(notifier);
+                break;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Benchmark
+    @Group("write_heavy")
+    @GroupThreads(WRITERS)
+    public boolean proposeWriteHeavy(PriceStream stream) {
+        long price = stream.next(prices);
+        return auction.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    @Group("write_heavy")
+    @GroupThreads(READERS)
+    public Bid readWriteHeavy() {
+        return auction.getLatestBid();
+    }
+
+    @Benchmark
+    @Group("read_heavy")
+    @GroupThreads(READERS)
+    public boolean proposeReadHeavy(PriceStream stream) {
+        long price = stream.next(prices);
+        return auction.propose(new Bid(price, price, price));
+    }
+
+    @Benchmark
+    @Group("read_heavy")
+    @GroupThreads(WRITERS)
+    public Bid readReadHeavy() {
+        return auction.getLatestBid();
+    }
+}
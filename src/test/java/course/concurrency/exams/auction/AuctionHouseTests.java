@@ -0,0 +1,86 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuctionHouseTests {
+
+    private static final int lotCount = 1_000;
+    private static final int iterations = 100_000;
+    private static final int poolSize = Runtime.getRuntime().availableProcessors();
+
+    private ExecutorService executor;
+    private Notifier notifier;
+    private AuctionHouse house;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier();
+        executor = Executors.newFixedThreadPool(poolSize);
+        house = new AuctionHouse(notifier);
+        for (long lotId = 0; lotId < lotCount; lotId++) {
+            house.openLot(lotId);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    public void testUnknownLot() {
+        assertFalse(house.propose(lotCount, new Bid(1L, 1L, 1L)));
+        assertNull(house.getLatestBid(lotCount));
+    }
+
+    @Test
+    public void testLotWithoutBids() {
+        assertNull(house.getLatestBid(0));
+        assertNull(house.stopLot(0));
+        assertTrue(house.stopAll().isEmpty());
+    }
+
+    @Test
+    public void testCorrectLatestBidPerLot() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int it = 0; it < iterations; it++) {
+                    long price = ThreadLocalRandom.current().nextLong(iterations);
+                    house.propose(it % lotCount, new Bid(price, price, price));
+                }
+            });
+        }
+        house.propose(0, new Bid(0, 0, iterations));
+
+        latch.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(iterations, house.getLatestBid(0).getPrice());
+    }
+
+    @Test
+    public void testStopAll() throws Exception {
+        house.propose(1, new Bid(1L, 1L, 10L));
+
+        Map<Long, Bid> winners = house.stopAll(Instant.now().plusMillis(100)).get(1, TimeUnit.SECONDS);
+
+        assertEquals(1, winners.size());
+        assertEquals(10L, winners.get(1L).getPrice());
+        assertFalse(house.propose(1, new Bid(2L, 2L, 20L)));
+        assertEquals(10L, house.getLatestBid(1).getPrice());
+    }
+}
@@ -2,8 +2,10 @@ package course.concurrency.exams.auction;
 
 import org.junit.jupiter.api.*;
 
+import java.util.List;
 import java.util.concurrent.*;
 
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class AuctionTests {
@@ -56,6 +58,25 @@ public class AuctionTests {
         testCorrectLatestBid(auction, "pessimistic");
     }
 
+    @Test
+    public void testBidHistory() {
+        checkBidHistory(new AuctionOptimistic(notifier, 4));
+        checkBidHistory(new AuctionPessimistic(notifier, 4));
+    }
+
+    private void checkBidHistory(Auction auction) {
+        for (long price = 0; price < 10; price++) {
+            auction.propose(new Bid(price, price, price));
+            auction.propose(new Bid(price, price, price - 5));
+        }
+
+        List<Long> prices = auction.getLatestBids(10).stream().map(Bid::getPrice).collect(toList());
+        assertEquals(List.of(6L, 7L, 8L, 9L), prices);
+        assertEquals(List.of(9L), auction.getLatestBids(1).stream().map(Bid::getPrice).collect(toList()));
+        assertEquals(List.of(), auction.getLatestBids(0));
+        assertEquals(List.of(), auction.getLatestBids(-1));
+    }
+
     public void testCorrectLatestBid(Auction auction, String tag) throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(1);
         for (int i = 0; i < poolSize; i++) {
@@ -0,0 +1,71 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingNotifierTests {
+
+    private final ConcurrentLinkedQueue<List<Bid>> sent = new ConcurrentLinkedQueue<>();
+
+    private final Notifier notifier = new CoalescingNotifier(10, 1_000, 1_000) {
+        @Override
+        protected void sendBatch(List<Bid> batch) {
+            sent.add(batch);
+        }
+    };
+
+    @Test
+    public void testOnlyLatestMessageIsSent() {
+        for (long price = 0; price < 50; price++) {
+            notifier.sendOutdatedMessage(new Bid(price, 1L, price));
+        }
+        notifier.shutdown();
+
+        assertEquals(1, sent.size());
+        assertEquals(1, sent.peek().size());
+        assertEquals(49L, sent.peek().get(0).getPrice());
+    }
+
+    @Test
+    public void testMessagesAreBatched() {
+        for (long participant = 0; participant < 95; participant++) {
+            notifier.sendOutdatedMessage(new Bid(participant, participant, 1L));
+        }
+        notifier.shutdown();
+
+        assertEquals(95, sent.stream().mapToInt(List::size).sum());
+        sent.forEach(batch -> assertTrue(batch.size() <= 10));
+    }
+
+    @Test
+    public void testLotsAreNotCoalesced() {
+        Auction first = new AuctionOptimistic(notifier);
+        Auction second = new AuctionOptimistic(notifier);
+        for (long price = 0; price < 5; price++) {
+            first.propose(new Bid(price, 1L, price));
+            second.propose(new Bid(price, 1L, price));
+        }
+        notifier.shutdown();
+
+        List<Bid> bids = sent.stream().flatMap(List::stream).collect(toList());
+        assertEquals(2, bids.size());
+        bids.forEach(bid -> assertEquals(3L, bid.getPrice()));
+    }
+
+    @Test
+    public void testBidsAfterShutdownAreIgnored() {
+        notifier.shutdown();
+        Auction auction = new AuctionOptimistic(notifier);
+
+        for (long price = 0; price < 50; price++) {
+            assertTrue(auction.propose(new Bid(price, price, price)));
+        }
+        assertTrue(sent.isEmpty());
+    }
+}
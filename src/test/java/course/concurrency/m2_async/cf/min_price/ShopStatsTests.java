@@ -0,0 +1,75 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShopStatsTests {
+
+    private final ShopStats stats = new ShopStats();
+
+    @Test
+    @DisplayName("No timeout or hedge until there are enough samples")
+    public void shouldWaitForSamples() {
+        for (int i = 0; i < ShopStats.MIN_SAMPLES - 1; i++) {
+            stats.recordSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertEquals(Long.MAX_VALUE, stats.timeoutNanos());
+        assertEquals(-1, stats.hedgeDelayNanos());
+    }
+
+    @Test
+    @DisplayName("Timeout is twice p99 but not below the minimum")
+    public void shouldBoundTimeout() {
+        for (int i = 0; i < ShopStats.MIN_SAMPLES; i++) {
+            stats.recordSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(ShopStats.MIN_TIMEOUT_NANOS, stats.timeoutNanos());
+
+        for (int i = 0; i < 200; i++) {
+            stats.recordSuccess(TimeUnit.MILLISECONDS.toNanos(i < 100 ? 10 : 300));
+        }
+        // the window keeps the latest samples only
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(600), stats.timeoutNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), stats.hedgeDelayNanos());
+    }
+
+    @Test
+    @DisplayName("Circuit opens after consecutive failures and closes after a while")
+    public void shouldOpenAndCloseCircuit() {
+        long now = 0;
+        for (int i = 0; i < ShopStats.FAILURES_TO_OPEN - 1; i++) {
+            stats.recordFailure(now);
+        }
+        assertTrue(stats.allowRequest(now));
+
+        stats.recordFailure(now);
+        assertFalse(stats.allowRequest(now + 1));
+        // half-open: a single probe goes through
+        assertTrue(stats.allowRequest(now + ShopStats.OPEN_NANOS));
+        assertFalse(stats.allowRequest(now + ShopStats.OPEN_NANOS));
+
+        // still failing: the probe's failure keeps it open
+        now += ShopStats.OPEN_NANOS;
+        stats.recordFailure(now);
+        assertFalse(stats.allowRequest(now + 1));
+        assertTrue(stats.allowRequest(now + ShopStats.OPEN_NANOS));
+
+        stats.recordSuccess(1);
+        assertTrue(stats.allowRequest(now + 1));
+    }
+
+    @Test
+    @DisplayName("Success resets the failure count")
+    public void shouldResetFailures() {
+        for (int i = 0; i < ShopStats.FAILURES_TO_OPEN - 1; i++) {
+            stats.recordFailure(0);
+        }
+        stats.recordSuccess(1);
+        stats.recordFailure(0);
+        assertTrue(stats.allowRequest(1));
+    }
+}
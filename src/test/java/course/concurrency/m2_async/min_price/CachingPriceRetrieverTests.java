@@ -0,0 +1,158 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.CachingPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class CachingPriceRetrieverTests {
+
+    PriceRetriever delegate;
+
+    @BeforeEach
+    public void setup() {
+        delegate = mock(PriceRetriever.class);
+    }
+
+    @Test
+    @DisplayName("Cached price is reused until it expires")
+    public void shouldCacheUntilExpired() throws InterruptedException {
+        when(delegate.getPrice(anyLong(), anyLong())).thenReturn(1d, 2d);
+        CachingPriceRetriever retriever = new CachingPriceRetriever(delegate, 100, TimeUnit.MILLISECONDS, 100);
+
+        assertEquals(1d, retriever.getPrice(1, 1));
+        assertEquals(1d, retriever.getPrice(1, 1));
+        verify(delegate, times(1)).getPrice(1, 1);
+
+        Thread.sleep(150);
+        assertEquals(2d, retriever.getPrice(1, 1));
+        verify(delegate, times(2)).getPrice(1, 1);
+    }
+
+    @Test
+    @DisplayName("Concurrent requests share one retrieval")
+    public void shouldCoalesceConcurrentRequests() throws Exception {
+        when(delegate.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            Thread.sleep(200);
+            return 5d;
+        });
+        CachingPriceRetriever retriever = new CachingPriceRetriever(delegate, 1, TimeUnit.MINUTES, 100);
+
+        int threads = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Future<Double>> prices = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < threads; i++) {
+            prices.add(executor.submit(() -> {
+                latch.await();
+                return retriever.getPrice(1, 1);
+            }));
+        }
+        latch.countDown();
+
+        for (Future<Double> price : prices) {
+            assertEquals(5d, price.get(1, TimeUnit.SECONDS));
+        }
+        verify(delegate, times(1)).getPrice(1, 1);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Failures are not cached")
+    public void shouldNotCacheFailures() {
+        when(delegate.getPrice(anyLong(), anyLong())).thenThrow(new RuntimeException()).thenReturn(3d);
+        CachingPriceRetriever retriever = new CachingPriceRetriever(delegate, 1, TimeUnit.MINUTES, 100);
+
+        try {
+            retriever.getPrice(1, 1);
+        } catch (RuntimeException ignored) {}
+
+        assertEquals(3d, retriever.getPrice(1, 1));
+    }
+
+    @Test
+    @DisplayName("Errors are not cached and don't block later requests")
+    public void shouldNotCacheErrors() {
+        when(delegate.getPrice(anyLong(), anyLong())).thenThrow(new AssertionError()).thenReturn(3d);
+        CachingPriceRetriever retriever = new CachingPriceRetriever(delegate, 1, TimeUnit.MINUTES, 100);
+
+        assertThrows(AssertionError.class, () -> retriever.getPrice(1, 1));
+        assertEquals(3d, assertTimeoutPreemptively(Duration.ofSeconds(1), () -> retriever.getPrice(1, 1)));
+    }
+
+    @Test
+    @DisplayName("Cancelled aggregator request doesn't break the shared retrieval")
+    public void shouldSurviveAggregatorCancellation() throws Exception {
+        when(delegate.getPrice(1, 1)).thenAnswer(inv -> {
+            Thread.sleep(300);
+            return 5d;
+        });
+        when(delegate.getPrice(1, 2)).thenReturn(1d);
+        CachingPriceRetriever retriever = new CachingPriceRetriever(delegate, 1, TimeUnit.MINUTES, 100);
+
+        PriceAggregator aggregator = new PriceAggregator();
+        aggregator.setPriceRetriever(retriever);
+        aggregator.setShops(List.of(1L, 2L));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Double> waiting = executor.submit(() -> retriever.getPrice(1, 1));
+        // shop 2 gives an acceptable price at once, so the call to shop 1 is cancelled
+        assertEquals(1d, aggregator.getMinPrice(1, 1d, price -> {}).get(1, TimeUnit.SECONDS));
+
+        assertEquals(5d, waiting.get(1, TimeUnit.SECONDS));
+        assertEquals(5d, retriever.getPrice(1, 1));
+        verify(delegate, times(1)).getPrice(1, 1);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Retrieval is cancelled once nobody waits for it")
+    public void shouldCancelAbandonedRetrieval() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(delegate.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return 5d;
+        }).thenReturn(7d);
+        CachingPriceRetriever retriever = new CachingPriceRetriever(delegate, 1, TimeUnit.MINUTES, 100);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Double> waiting = executor.submit(() -> retriever.getPrice(1, 1));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        waiting.cancel(true);
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "Retrieval wasn't cancelled");
+        assertEquals(7d, assertTimeoutPreemptively(Duration.ofSeconds(1), () -> retriever.getPrice(1, 1)));
+        verify(delegate, times(2)).getPrice(1, 1);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Cache size is bounded")
+    public void shouldBoundSize() {
+        when(delegate.getPrice(anyLong(), anyLong())).thenReturn(1d);
+        CachingPriceRetriever retriever = new CachingPriceRetriever(delegate, 1, TimeUnit.MINUTES, 10);
+
+        for (long shopId = 0; shopId < 100; shopId++) {
+            retriever.getPrice(1, shopId);
+        }
+
+        assertTrue(retriever.size() <= 10);
+    }
+}
@@ -0,0 +1,69 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.LongDoubleMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongDoubleMapTests {
+
+    @Test
+    @DisplayName("Values are replaced and missing keys give the default")
+    public void shouldPutAndGet() {
+        LongDoubleMap map = new LongDoubleMap(4);
+
+        map.put(1, 10d);
+        map.put(1, 11d);
+        map.put(-1, Double.NaN);
+
+        assertEquals(2, map.size());
+        assertEquals(11d, map.get(1));
+        assertTrue(map.containsKey(-1));
+        assertEquals(Double.NaN, map.get(-1));
+        assertFalse(map.containsKey(2));
+        assertEquals(Double.NaN, map.get(2));
+        assertEquals(7d, map.get(2, 7d));
+    }
+
+    @Test
+    @DisplayName("Long.MIN_VALUE is a regular key")
+    public void shouldKeepMinValueKey() {
+        LongDoubleMap map = new LongDoubleMap(4);
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+        assertEquals(7d, map.get(Long.MIN_VALUE, 7d));
+
+        map.put(Long.MIN_VALUE, 1d);
+        map.put(Long.MIN_VALUE, 2d);
+        map.put(0, 3d);
+
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey(Long.MIN_VALUE));
+        assertEquals(2d, map.get(Long.MIN_VALUE));
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 0}, keys);
+    }
+
+    @Test
+    @DisplayName("Map grows past the expected size")
+    public void shouldResize() {
+        LongDoubleMap map = new LongDoubleMap(0);
+        long[] expected = LongStream.range(-500, 500).map(i -> i * 1_000_003).toArray();
+
+        for (long key : expected) {
+            map.put(key, key / 2d);
+        }
+
+        assertEquals(expected.length, map.size());
+        for (long key : expected) {
+            assertEquals(key / 2d, map.get(key));
+        }
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected, keys);
+    }
+}
@@ -1,15 +1,23 @@
 package course.concurrency.m2_async.min_price;
 
+import course.concurrency.m2_async.cf.min_price.ExecutionMode;
+import course.concurrency.m2_async.cf.min_price.LongDoubleMap;
 import course.concurrency.m2_async.cf.min_price.PriceAggregator;
 import course.concurrency.m2_async.cf.min_price.PriceRetriever;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -19,10 +27,12 @@ import java.util.stream.LongStream;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 public class PriceAggregatorTests {
 
@@ -224,4 +234,328 @@ public class PriceAggregatorTests {
         assertEquals(expectedMinPrice, min, "Minimal price is evaluated incorrectly");
         assertTrue((end - start) < SLA, "Method evaluated too long");
     }
+
+    @Test
+    @DisplayName("Stops when acceptable price is found")
+    public void shouldStopOnAcceptablePrice() {
+        int shopCount = 50;
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            if (shopId == 0) {
+                return 5d;
+            }
+            Thread.sleep(SLA);
+            return 1d;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        Set<Long> shops = LongStream.range(0, shopCount).boxed().collect(toSet());
+        priceAggregator.setShops(shops);
+        List<Double> improvements = new CopyOnWriteArrayList<>();
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(randomItemId, 10d, improvements::add).join();
+        long end = System.currentTimeMillis();
+
+        assertEquals(5d, min, "Minimal price is evaluated incorrectly");
+        assertEquals(List.of(5d), improvements);
+        assertTrue((end - start) < SLA / 3, "Method evaluated too long");
+    }
+
+    @Test
+    @DisplayName("Reports every improvement in order")
+    public void shouldReportImprovements() {
+        int shopCount = 20;
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            Thread.sleep(shopId * 50);
+            return 100d - shopId;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        Set<Long> shops = LongStream.range(0, shopCount).boxed().collect(toSet());
+        priceAggregator.setShops(shops);
+        List<Double> improvements = new CopyOnWriteArrayList<>();
+
+        double min = priceAggregator.getMinPrice(randomItemId, Double.NEGATIVE_INFINITY, improvements::add).join();
+
+        assertEquals(100d - (shopCount - 1), min, "Minimal price is evaluated incorrectly");
+        assertEquals(min, improvements.get(improvements.size() - 1));
+        for (int i = 1; i < improvements.size(); i++) {
+            assertTrue(improvements.get(i) < improvements.get(i - 1), "Improvements are not decreasing");
+        }
+    }
+
+    @Test
+    @DisplayName("Failing listener completes the request at once")
+    public void shouldIsolateListenerFailure() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenReturn(1d);
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(List.of(1L, 2L));
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<Double> min = priceAggregator.getMinPrice(randomItemId, Double.NEGATIVE_INFINITY, price -> {
+            throw new IllegalStateException();
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, min::join);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertTrue((System.currentTimeMillis() - start) < SLA / 3, "Method evaluated too long");
+    }
+
+    @Test
+    @DisplayName("Dependent stages don't run on the scheduler thread")
+    public void shouldCompleteOffScheduler() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenReturn(3d);
+        // the outer request ends at its deadline, so the scheduler completes it
+        when(priceRetriever.getPrice(eq(randomItemId), eq(1L))).thenAnswer(inv -> {
+            Thread.sleep(SLA * 2);
+            return 1d;
+        });
+        when(priceRetriever.getPrice(anyLong(), eq(2L))).thenReturn(2d);
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(List.of(1L, 2L));
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        long start = System.currentTimeMillis();
+        double nested = priceAggregator.getMinPrice(randomItemId, Double.NEGATIVE_INFINITY, price -> {})
+                .thenApply(price -> {
+                    threads.add(Thread.currentThread().getName());
+                    return priceAggregator.getMinPrice(randomItemId + 1, 2d, p -> {}).join();
+                })
+                .join();
+        long end = System.currentTimeMillis();
+
+        assertEquals(2d, nested, "Minimal price is evaluated incorrectly");
+        assertFalse(threads.get(0).contains("scheduler"), "Stage ran on " + threads.get(0));
+        assertTrue((end - start) < SLA + SLA / 3, "Method evaluated too long");
+    }
+
+    @Test
+    @DisplayName("Slow call is hedged once the shop has a latency history")
+    public void shouldHedgeSlowCall() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        AtomicBoolean slow = new AtomicBoolean();
+        AtomicInteger invocations = new AtomicInteger();
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            // with slow set, every first call of a pair hangs and every second one is fast
+            boolean hang = slow.get() && invocations.getAndIncrement() % 2 == 0;
+            Thread.sleep(hang ? SLA * 2 : 20);
+            return 5d;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(List.of(1L));
+        warmUp();
+
+        slow.set(true);
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(randomItemId);
+        long end = System.currentTimeMillis();
+
+        assertEquals(5d, min, "Minimal price is evaluated incorrectly");
+        assertEquals(2, invocations.get());
+        assertTrue((end - start) < SLA / 3, "Hedged call wasn't made");
+    }
+
+    @Test
+    @DisplayName("Call waiting in the executor queue is not hedged")
+    public void shouldNotHedgeQueuedCall() throws Exception {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        AtomicBoolean busy = new AtomicBoolean();
+        AtomicInteger invocations = new AtomicInteger();
+        long itemId = 1;
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long item = inv.getArgument(0);
+            if (item == itemId && busy.get()) {
+                invocations.incrementAndGet();
+                Thread.sleep(10);
+                return 5d;
+            }
+            // warm-up calls set p95 and the timeout, calls of the other items then hold every thread
+            Thread.sleep(busy.get() ? 200 : 100);
+            return 5d;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(List.of(1L));
+        warmUp();
+
+        busy.set(true);
+        long[] others = LongStream.range(100, 164).toArray();
+        CompletableFuture<LongDoubleMap> batch = CompletableFuture.supplyAsync(() -> priceAggregator.getMinPrices(others));
+        Thread.sleep(50);
+        double min = priceAggregator.getMinPrice(itemId);
+
+        assertEquals(5d, min, "Minimal price is evaluated incorrectly");
+        assertEquals(1, invocations.get(), "Queued call was hedged");
+        batch.join();
+    }
+
+    @Test
+    @DisplayName("Shop with a latency history times out long before the deadline")
+    public void shouldBoundShopTimeout() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        AtomicBoolean slow = new AtomicBoolean();
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            Thread.sleep(slow.get() && shopId == 2 ? SLA * 2 : 20);
+            return (double) shopId;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(List.of(1L, 2L));
+        warmUp();
+
+        slow.set(true);
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(randomItemId);
+        long end = System.currentTimeMillis();
+
+        assertEquals(1d, min, "Minimal price is evaluated incorrectly");
+        assertTrue((end - start) < SLA / 3, "Shop timeout isn't adapted");
+    }
+
+    @Test
+    @DisplayName("Shop that keeps timing out is skipped")
+    public void shouldSkipTimingOutShop() {
+        // like PriceRetriever: swallows the interrupt and answers at once
+        AtomicInteger invocations = new AtomicInteger();
+        PriceRetriever priceRetriever = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                invocations.incrementAndGet();
+                try {
+                    Thread.sleep(SLA * 2);
+                } catch (InterruptedException ignored) {}
+                return 1d;
+            }
+        };
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(List.of(1L));
+
+        List<CompletableFuture<Double>> timedOut = IntStream.range(0, 5)
+                .mapToObj(i -> priceAggregator.getMinPrice(randomItemId, Double.NEGATIVE_INFINITY, price -> {}))
+                .collect(toList());
+        timedOut.forEach(min -> assertEquals(Double.NaN, min.join()));
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(randomItemId);
+        long end = System.currentTimeMillis();
+
+        assertEquals(Double.NaN, min);
+        assertEquals(5, invocations.get());
+        assertTrue((end - start) < SLA / 3, "Shop wasn't skipped");
+    }
+
+    @Test
+    @DisplayName("Batch asks every distinct item once")
+    public void shouldReturnMinPrices() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long itemId = inv.getArgument(0);
+            long shopId = inv.getArgument(1);
+            if (itemId == 3) {
+                throw new RuntimeException();
+            }
+            return itemId * 100d + shopId;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(List.of(1L, 2L, 3L));
+
+        LongDoubleMap prices = priceAggregator.getMinPrices(new long[]{1, 2, 1, 3});
+
+        assertEquals(3, prices.size());
+        assertEquals(101d, prices.get(1));
+        assertEquals(201d, prices.get(2));
+        assertEquals(Double.NaN, prices.get(3));
+        assertFalse(prices.containsKey(4));
+        verify(priceRetriever, times(3)).getPrice(eq(1L), anyLong());
+    }
+
+    @Test
+    @DisplayName("Batch keeps the deadline and leaves the shops usable")
+    public void shouldKeepBatchDeadline() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            Thread.sleep(1000);
+            return 1d;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        long[] itemIds = LongStream.range(0, 1000).toArray();
+
+        long start = System.currentTimeMillis();
+        LongDoubleMap prices = priceAggregator.getMinPrices(itemIds);
+        long end = System.currentTimeMillis();
+
+        assertEquals(itemIds.length, prices.size());
+        assertTrue((end - start) < SLA, "Method evaluated too long");
+        // calls cut by the deadline after waiting in the queue don't open the circuit
+        assertEquals(1d, priceAggregator.getMinPrice(randomItemId));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    @DisplayName("Every execution mode keeps blocking calls off the common pool")
+    public void shouldRunInEveryMode(ExecutionMode mode) {
+        int shopCount = 50;
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        PriceRetriever priceRetriever = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                threads.add(Thread.currentThread().getName());
+                try {
+                    Thread.sleep(shopId == 0 ? SLA * 2 : 100);
+                } catch (InterruptedException ignored) {}
+                return shopId;
+            }
+        };
+        priceAggregator = new PriceAggregator(mode);
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(LongStream.range(0, shopCount).boxed().collect(toList()));
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPrice(randomItemId);
+        long end = System.currentTimeMillis();
+
+        assertEquals(1d, min, "Minimal price is evaluated incorrectly");
+        assertTrue((end - start) < SLA, "Method evaluated too long");
+        assertTrue(threads.stream().noneMatch(name -> name.startsWith("ForkJoinPool.commonPool")));
+    }
+
+    // enough answers for per shop timeouts and hedging to start
+    @Test
+    @DisplayName("Calls in flight are limited whatever the execution mode")
+    public void shouldLimitConcurrentRequests() {
+        int shopCount = 40;
+        int limit = 8;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        PriceRetriever priceRetriever = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                return shopId;
+            }
+        };
+        priceAggregator = new PriceAggregator(ExecutionMode.ELASTIC_IO, limit);
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(LongStream.range(0, shopCount).boxed().collect(toList()));
+
+        double min = priceAggregator.getMinPrice(randomItemId);
+
+        assertEquals(0d, min, "Minimal price is evaluated incorrectly");
+        assertTrue(maxInFlight.get() <= limit, maxInFlight.get() + " calls in flight");
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 30; i++) {
+            priceAggregator.getMinPrice(randomItemId);
+        }
+    }
 }
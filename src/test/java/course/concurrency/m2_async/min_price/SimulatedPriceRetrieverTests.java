@@ -0,0 +1,48 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.SimulatedPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.SimulatedPriceRetriever.Latency;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulatedPriceRetrieverTests {
+
+    @Test
+    @DisplayName("Shop settings override the default ones")
+    public void shouldUseShopSettings() {
+        SimulatedPriceRetriever retriever = new SimulatedPriceRetriever(Latency.fixed(0), 0)
+                .setShop(2, Latency.fixed(0), 1);
+
+        double price = retriever.getPrice(1, 1);
+        assertTrue(price >= 0 && price < 1000);
+        assertThrows(IllegalStateException.class, () -> retriever.getPrice(1, 2));
+    }
+
+    @Test
+    @DisplayName("Fixed latency is respected")
+    public void shouldSleepForLatency() {
+        SimulatedPriceRetriever retriever = new SimulatedPriceRetriever(Latency.fixed(100), 0);
+
+        long start = System.currentTimeMillis();
+        retriever.getPrice(1, 1);
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+
+    @Test
+    @DisplayName("Bimodal latency takes the slow path at the given share")
+    public void shouldMixLatencies() {
+        Latency latency = Latency.bimodal(Latency.fixed(1), Latency.fixed(10_000), 0.1);
+
+        int slow = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (latency.nextMillis(ThreadLocalRandom.current()) == 10_000) {
+                slow++;
+            }
+        }
+        assertEquals(1_000, slow, 200);
+    }
+}
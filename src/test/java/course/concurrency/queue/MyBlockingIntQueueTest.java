@@ -0,0 +1,93 @@
+package course.concurrency.queue;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyBlockingIntQueueTest {
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @Test
+    void checkFIFO() throws InterruptedException {
+        final MyBlockingIntQueue queue = new MyBlockingIntQueue(3);
+
+        queue.enqueue(1);
+        queue.enqueue(2);
+        assertTrue(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+        assertFalse(queue.offer(4, 10, TimeUnit.MILLISECONDS));
+
+        assertEquals(1, queue.dequeue());
+        assertEquals(2, queue.dequeue());
+        assertEquals(3, queue.poll(10, TimeUnit.MILLISECONDS, -1));
+        assertEquals(-1, queue.poll(10, TimeUnit.MILLISECONDS, -1));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void checkBatch() throws InterruptedException {
+        final MyBlockingIntQueue queue = new MyBlockingIntQueue(8);
+
+        queue.enqueueAll(new int[]{1, 2, 3, 4, 5}, 4);
+        int[] target = new int[3];
+        assertEquals(3, queue.drainTo(target, 10));
+        assertArrayEquals(new int[]{1, 2, 3}, target);
+        assertEquals(1, queue.drainTo(target, 10));
+        assertEquals(4, target[0]);
+        assertEquals(0, queue.drainTo(target, 10));
+    }
+
+    @Test
+    void checkBatchLengthOutOfBounds() throws InterruptedException {
+        final MyBlockingIntQueue queue = new MyBlockingIntQueue(8);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> queue.enqueueAll(new int[]{1, 2}, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> queue.enqueueAll(new int[]{1, 2}, -1));
+        assertEquals(0, queue.size());
+
+        queue.enqueue(7);
+        assertEquals(7, queue.dequeue());
+    }
+
+    @RepeatedTest(10)
+    void testMultithreading() throws Exception {
+        final MyBlockingIntQueue queue = new MyBlockingIntQueue(16);
+        int count = 10_000;
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i + 1;
+        }
+
+        for (int p = 0; p < 2; p++) {
+            executorService.execute(() -> {
+                try {
+                    queue.enqueueAll(values);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        Future<Integer> consumer = executorService.submit(() -> {
+            int sum = 0;
+            int[] batch = new int[64];
+            int received = 0;
+            while (received < 2 * count) {
+                sum += queue.dequeue();
+                received++;
+                int n = queue.drainTo(batch, batch.length);
+                for (int i = 0; i < n; i++) {
+                    sum += batch[i];
+                }
+                received += n;
+            }
+            return sum;
+        });
+
+        assertEquals(count * (count + 1), consumer.get(5, TimeUnit.SECONDS));
+        assertEquals(0, queue.size());
+        executorService.shutdown();
+    }
+}
@@ -0,0 +1,182 @@
+package course.concurrency.queue;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.*;
+
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MyBlockingQueueBenchmarks {
+
+    // thread count of the "many" side
+    public static final int MANY = 4;
+
+    // Timed attempts are retried until they succeed, so one operation is one transferred element.
+    // The timeout only lets a thread notice the end of the iteration when the other side has stopped
+    private static final long TIMEOUT_MICROS = 1_000;
+
+    private static final Object VALUE = new Object();
+
+    // MyBlockingQueueWithMetrics shows the cost of QueueMetrics compared to MyBlockingQueue
+    @Param({"MyBlockingQueue", "MyBlockingQueueWithMetrics", "ArrayBlockingQueue", "LinkedBlockingQueue", "LinkedTransferQueue"})
+    private String implementation;
+
+    @Param({"16", "1024"})
+    private int capacity;
+
+    private Queue queue;
+
+    // common surface of the compared queues
+    private interface Queue {
+        boolean offer(Object value) throws InterruptedException;
+
+        Object poll() throws InterruptedException;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MyBlockingQueueBenchmarks.class.getName())
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        switch (implementation) {
+            case "MyBlockingQueue":
+                queue = of(new MyBlockingQueue<>(capacity));
+                break;
+            case "MyBlockingQueueWithMetrics":
+                queue = of(new MyBlockingQueue<>(capacity, MyBlockingQueue.Tracer.NONE, new QueueMetrics()));
+                break;
+            case "ArrayBlockingQueue":
+                queue = of(new ArrayBlockingQueue<>(capacity));
+                break;
+            case "LinkedBlockingQueue":
+                queue = of(new LinkedBlockingQueue<>(capacity));
+                break;
+            case "LinkedTransferQueue":
+                // unbounded, so producers hand off directly to consumers instead of filling it up
+                LinkedTransferQueue<Object> transferQueue = new LinkedTransferQueue<>();
+                queue = new Queue() {
+                    public boolean offer(Object value) throws InterruptedException {
+                        return transferQueue.tryTransfer(value, TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+                    }
+
+                    public Object poll() throws InterruptedException {
+                        return transferQueue.poll(TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+                    }
+                };
+                break;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+    }
+
+    private static Queue of(MyBlockingQueue<Object> myQueue) {
+        return new Queue() {
+            public boolean offer(Object value) throws InterruptedException {
+                return myQueue.offer(value, TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+            }
+
+            public Object poll() throws InterruptedException {
+                return myQueue.poll(TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+            }
+        };
+    }
+
+    private static Queue of(BlockingQueue<Object> blockingQueue) {
+        return new Queue() {
+            public boolean offer(Object value) throws InterruptedException {
+                return blockingQueue.offer(value, TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+            }
+
+            public Object poll() throws InterruptedException {
+                return blockingQueue.poll(TIMEOUT_MICROS, TimeUnit.MICROSECONDS);
+            }
+        };
+    }
+
+    private boolean offer(Control control) throws InterruptedException {
+        while (!control.stopMeasurement) {
+            if (queue.offer(VALUE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object poll(Control control) throws InterruptedException {
+        while (!control.stopMeasurement) {
+            Object value = queue.poll();
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    @Group("one_to_one")
+    @GroupThreads(1)
+    public boolean produceOneToOne(Control control) throws InterruptedException {
+        return offer(control);
+    }
+
+    @Benchmark
+    @Group("one_to_one")
+    @GroupThreads(1)
+    public Object consumeOneToOne(Control control) throws InterruptedException {
+        return poll(control);
+    }
+
+    @Benchmark
+    @Group("one_to_many")
+    @GroupThreads(1)
+    public boolean produceOneToMany(Control control) throws InterruptedException {
+        return offer(control);
+    }
+
+    @Benchmark
+    @Group("one_to_many")
+    @GroupThreads(MANY)
+    public Object consumeOneToMany(Control control) throws InterruptedException {
+        return poll(control);
+    }
+
+    @Benchmark
+    @Group("many_to_one")
+    @GroupThreads(MANY)
+    public boolean produceManyToOne(Control control) throws InterruptedException {
+        return offer(control);
+    }
+
+    @Benchmark
+    @Group("many_to_one")
+    @GroupThreads(1)
+    public Object consumeManyToOne(Control control) throws InterruptedException {
+        return poll(control);
+    }
+
+    @Benchmark
+    @Group("many_to_many")
+    @GroupThreads(MANY)
+    public boolean produceManyToMany(Control control) throws InterruptedException {
+        return offer(control);
+    }
+
+    @Benchmark
+    @Group("many_to_many")
+    @GroupThreads(MANY)
+    public Object consumeManyToMany(Control control) throws InterruptedException {
+        return poll(control);
+    }
+}
@@ -3,13 +3,16 @@ package course.concurrency.queue;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class MyBlockingQueueTest {
 
@@ -66,6 +69,122 @@ class MyBlockingQueueTest {
 
     }
 
+    @Test
+    void checkOfferTimeout() throws InterruptedException {
+        final MyBlockingQueue<Object> queue = new MyBlockingQueue<>(1);
+
+        assertTrue(queue.offer(new Object(), 10, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        assertFalse(queue.offer(new Object(), 50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void checkPollTimeout() throws InterruptedException {
+        final MyBlockingQueue<Object> queue = new MyBlockingQueue<>(1);
+
+        long start = System.nanoTime();
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        Object value = new Object();
+        executorService.execute(() -> {
+            try {
+                Thread.sleep(20);
+                queue.enqueue(value);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertEquals(value, queue.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void checkDrainTo() throws InterruptedException {
+        final MyBlockingQueue<Integer> queue = new MyBlockingQueue<>(5);
+        queue.enqueueAll(List.of(1, 2, 3, 4));
+
+        List<Integer> target = new ArrayList<>();
+        assertEquals(3, queue.drainTo(target, 3));
+        assertEquals(List.of(1, 2, 3), target);
+        assertEquals(1, queue.size());
+
+        assertEquals(1, queue.drainTo(target, 10));
+        assertEquals(0, queue.drainTo(target, 10));
+        assertEquals(List.of(1, 2, 3, 4), target);
+    }
+
+    @Test
+    void checkEnqueueAllMoreThanCapacity() throws InterruptedException {
+        final MyBlockingQueue<Integer> queue = new MyBlockingQueue<>(5);
+        List<Integer> values = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+        executorService.execute(() -> {
+            try {
+                queue.enqueueAll(values);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        List<Integer> target = new ArrayList<>();
+        while (target.size() < values.size()) {
+            target.add(queue.dequeue());
+            queue.drainTo(target, 7);
+        }
+        assertEquals(values, target);
+    }
+
+    @Test
+    void checkEnqueueAllFailingIterator() throws InterruptedException {
+        final MyBlockingQueue<Integer> queue = new MyBlockingQueue<>(5);
+        List<Integer> values = new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                if (index == 2) {
+                    throw new IllegalStateException();
+                }
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return 4;
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> queue.enqueueAll(values));
+        assertEquals(2, queue.size());
+
+        queue.enqueue(100);
+        assertEquals(0, queue.dequeue());
+        assertEquals(1, queue.dequeue());
+        assertEquals(100, queue.dequeue());
+    }
+
+    @Test
+    void checkMetrics() throws InterruptedException {
+        QueueMetrics metrics = new QueueMetrics();
+        final MyBlockingQueue<Integer> queue = new MyBlockingQueue<>(5, MyBlockingQueue.Tracer.NONE, metrics);
+
+        queue.enqueueAll(List.of(1, 2, 3));
+        queue.dequeue();
+        queue.drainTo(new ArrayList<>(), 1);
+        assertNotNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+        QueueMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.getEnqueueCount());
+        assertEquals(3, snapshot.getDequeueCount());
+        assertEquals(3, snapshot.getHighWaterMark());
+        // only slot 0 of the first 64 is sampled
+        assertEquals(1, Arrays.stream(snapshot.getResidencyHistogram()).sum());
+        assertTrue(snapshot.getEmptyWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(0, snapshot.getBlockedConsumers());
+    }
+
     @RepeatedTest(10)
     void testMultithreading() throws InterruptedException {
         final MyBlockingQueue<Object> queue = new MyBlockingQueue<>(100);
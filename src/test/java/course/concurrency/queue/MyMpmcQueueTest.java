@@ -0,0 +1,83 @@
+package course.concurrency.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyMpmcQueueTest {
+
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+    @Test
+    void checkOfferAndPoll() {
+        final MyMpmcQueue<Object> queue = new MyMpmcQueue<>(4);
+
+        Object value1 = new Object();
+        Object value2 = new Object();
+        assertTrue(queue.offer(value1));
+        assertTrue(queue.offer(value2));
+        assertEquals(2, queue.size());
+
+        assertEquals(value1, queue.poll());
+        assertEquals(value2, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void checkFull() {
+        final MyMpmcQueue<Object> queue = new MyMpmcQueue<>(3);
+
+        for (int i = 0; i < queue.capacity(); i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(-1));
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(-1));
+    }
+
+    // SPIN is left out: busy waiting threads starve each other when there are fewer cores than threads
+    @ParameterizedTest
+    @EnumSource(value = WaitStrategy.class, names = {"YIELD", "PARK"})
+    void testMultithreading(WaitStrategy waitStrategy) throws InterruptedException {
+        final MyMpmcQueue<Integer> queue = new MyMpmcQueue<>(8, waitStrategy);
+        int producers = 4;
+        int count = 10_000;
+        LongAdder sum = new LongAdder();
+        CountDownLatch done = new CountDownLatch(producers * 2);
+
+        for (int p = 0; p < producers; p++) {
+            executorService.execute(() -> {
+                try {
+                    for (int i = 1; i <= count; i++) {
+                        queue.enqueue(i);
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            executorService.execute(() -> {
+                try {
+                    for (int i = 1; i <= count; i++) {
+                        sum.add(queue.dequeue());
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals((long) producers * count * (count + 1) / 2, sum.sum());
+        assertEquals(0, queue.size());
+    }
+}
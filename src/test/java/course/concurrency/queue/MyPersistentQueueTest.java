@@ -0,0 +1,133 @@
+package course.concurrency.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyPersistentQueueTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void checkFIFO() throws Exception {
+        try (MyPersistentQueue queue = new MyPersistentQueue(dir.resolve("queue"), 1024)) {
+            queue.enqueue(bytes("first"));
+            queue.enqueue(bytes("second"));
+            assertEquals(2, queue.size());
+
+            assertEquals("first", string(queue.dequeue()));
+            assertEquals("second", string(queue.dequeue()));
+            assertEquals(0, queue.size());
+        }
+    }
+
+    @Test
+    void checkSurvivesReopen() throws Exception {
+        Path file = dir.resolve("queue");
+        try (MyPersistentQueue queue = new MyPersistentQueue(file, 1024)) {
+            queue.enqueue(bytes("consumed"));
+            queue.enqueue(bytes("kept 1"));
+            queue.enqueue(bytes("kept 2"));
+            queue.dequeue();
+        }
+
+        try (MyPersistentQueue queue = new MyPersistentQueue(file, 1024)) {
+            assertEquals(2, queue.size());
+            assertEquals("kept 1", string(queue.dequeue()));
+            assertEquals("kept 2", string(queue.dequeue()));
+        }
+    }
+
+    @Test
+    void checkRecordStaysWhenConsumerFails() throws Exception {
+        try (MyPersistentQueue queue = new MyPersistentQueue(dir.resolve("queue"), 1024)) {
+            queue.enqueue(bytes("record"));
+
+            assertThrows(IllegalStateException.class, () -> queue.dequeue(record -> {
+                throw new IllegalStateException();
+            }));
+            assertEquals("record", string(queue.dequeue()));
+        }
+    }
+
+    @Test
+    void checkProducerIsNotBlockedByConsumer() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (MyPersistentQueue queue = new MyPersistentQueue(dir.resolve("queue"), 1024)) {
+            queue.enqueue(bytes("first"));
+
+            queue.dequeue(record -> {
+                Future<?> producer = executorService.submit(() -> {
+                    queue.enqueue(bytes("second"));
+                    return null;
+                });
+                assertDoesNotThrow(() -> producer.get(1, TimeUnit.SECONDS));
+            });
+            assertEquals(1, queue.size());
+            assertEquals("second", string(queue.dequeue()));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void checkClosedQueue() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            MyPersistentQueue queue = new MyPersistentQueue(dir.resolve("queue"), 1024);
+            Future<byte[]> consumer = executorService.submit(() -> queue.dequeue());
+            Thread.sleep(100);
+            queue.close();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> consumer.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertThrows(IllegalStateException.class, () -> queue.enqueue(bytes("record")));
+            assertThrows(IllegalStateException.class, () -> queue.dequeue());
+            queue.close();
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void checkTooLargeRecord() throws Exception {
+        try (MyPersistentQueue queue = new MyPersistentQueue(dir.resolve("queue"), 64)) {
+            assertThrows(IllegalArgumentException.class, () -> queue.enqueue(new byte[queue.maxRecordSize() + 1]));
+        }
+    }
+
+    @Test
+    void testWrapAroundWithConcurrentProducer() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (MyPersistentQueue queue = new MyPersistentQueue(dir.resolve("queue"), 100)) {
+            int count = 10_000;
+            Future<?> producer = executorService.submit(() -> {
+                for (int i = 0; i < count; i++) {
+                    queue.enqueue(bytes("record " + i));
+                }
+                return null;
+            });
+
+            for (int i = 0; i < count; i++) {
+                assertEquals("record " + i, string(queue.dequeue()));
+            }
+            producer.get(5, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
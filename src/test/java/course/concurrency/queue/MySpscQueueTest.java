@@ -0,0 +1,50 @@
+package course.concurrency.queue;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MySpscQueueTest {
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    @Test
+    void checkOfferAndPoll() {
+        final MySpscQueue<Object> queue = new MySpscQueue<>(2);
+
+        Object value1 = new Object();
+        Object value2 = new Object();
+        assertTrue(queue.offer(value1));
+        assertTrue(queue.offer(value2));
+        assertFalse(queue.offer(new Object()));
+        assertEquals(2, queue.size());
+
+        assertEquals(value1, queue.poll());
+        assertEquals(value2, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @RepeatedTest(10)
+    void testProducerConsumer() throws Exception {
+        final MySpscQueue<Integer> queue = new MySpscQueue<>(16, WaitStrategy.YIELD);
+        int count = 100_000;
+
+        Future<?> producer = executorService.submit(() -> {
+            for (int i = 0; i < count; i++) {
+                queue.enqueue(i);
+            }
+            return null;
+        });
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, queue.dequeue());
+        }
+        producer.get(5, TimeUnit.SECONDS);
+        assertEquals(0, queue.size());
+        executorService.shutdown();
+    }
+}